@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.caleydo.core.data.collection.table.Table;
+import org.caleydo.core.io.DataSetDescription;
+import org.caleydo.core.util.logging.Logger;
+import org.caleydo.view.bicluster.internal.Activator;
+import org.caleydo.view.bicluster.sorting.FuzzyClustering;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * binary on-disk cache of the scanned L / Z memberships, keyed by the path of the source file.
+ *
+ * format: magic, version, #clusters, #rows, size, modification time and SHA-1 content hash of the source file
+ * followed by per cluster the sorted indices and the sorted memberships. A cache is valid if the size and the
+ * modification time of the source file are unchanged. If just the modification time differs, e.g. the file was
+ * copied, the content hash decides. Thus the source file is just read on a miss.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class FuzzyClusteringCache {
+	private static final Logger log = Logger.create(FuzzyClusteringCache.class);
+
+	private static final int MAGIC = 0x465A4243; // FZBC
+	private static final int VERSION = 2;
+	private static final int HASH_SIZE = 20;
+	private static final int HEADER_SIZE = 4 * 4 + 8 + 8 + HASH_SIZE;
+	/**
+	 * the max size of the buffer of a single cluster
+	 */
+	private static final long MAX_CHUNK = Integer.MAX_VALUE;
+
+	private FuzzyClusteringCache() {
+
+	}
+
+	/**
+	 * loads the cached clusterings of the given table if any
+	 *
+	 * @param cache
+	 *            the cache file see {@link #getCacheFile(Table)}
+	 * @param lOrZ
+	 * @return the cached clusterings or null if not cached or the cache is invalid
+	 */
+	public static List<FuzzyClustering> load(File cache, Table lOrZ) {
+		if (cache == null || !cache.isFile())
+			return null;
+		final File source = getSource(lOrZ);
+		if (source == null)
+			return null;
+		final int clusters = lOrZ.size();
+		final int rows = lOrZ.depth();
+		try (FileChannel channel = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != clusters
+					|| header.getInt() != rows || channel.size() != fileSize(clusters, rows)
+					|| !isSameSource(header, source)) {
+				log.warn("invalid cache file: " + cache + " ignoring it");
+				return null;
+			}
+			if (clusterSize(rows) > MAX_CHUNK) // can't buffer a single cluster
+				return null;
+			ByteBuffer b = ByteBuffer.allocate((int) clusterSize(rows));
+			List<FuzzyClustering> r = new ArrayList<>(clusters);
+			for (int i = 0; i < clusters; ++i) {
+				b.clear();
+				readFully(channel, b);
+				int[] indices = new int[rows];
+				float[] memberships = new float[rows];
+				b.asIntBuffer().get(indices);
+				b.position(rows * 4);
+				b.asFloatBuffer().get(memberships);
+				r.add(new FuzzyClustering(indices, memberships));
+			}
+			log.info("loaded cached clustering: " + cache);
+			return ImmutableList.copyOf(r);
+		} catch (IOException e) {
+			log.warn("can't read cache file: " + cache, e);
+			return null;
+		}
+	}
+
+	/**
+	 * stores the given clusterings of the given table in the cache
+	 *
+	 * @param cache
+	 *            the cache file see {@link #getCacheFile(Table)}
+	 * @param lOrZ
+	 * @param clusterings
+	 */
+	public static void store(File cache, Table lOrZ, List<FuzzyClustering> clusterings) {
+		if (cache == null)
+			return;
+		final File source = getSource(lOrZ);
+		if (source == null)
+			return;
+		final int clusters = clusterings.size();
+		final int rows = lOrZ.depth();
+		File tmp = new File(cache.getParentFile(), cache.getName() + ".tmp");
+		try {
+			// written without mapping, as a mapped file can't be moved or replaced on windows
+			try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(clusters).putInt(rows);
+				// the attributes before hashing, such that a concurrent change invalidates the cache
+				header.putLong(source.length()).putLong(source.lastModified()).put(hash(source));
+				writeFully(channel, header);
+				final long clusterSize = clusterSize(rows);
+				if (clusterSize > MAX_CHUNK)
+					throw new IOException("cluster too large to be cached");
+				ByteBuffer b = ByteBuffer.allocate((int) clusterSize);
+				for (FuzzyClustering c : clusterings) {
+					b.clear();
+					IntBuffer indices = b.asIntBuffer();
+					for (int i = 0; i < rows; ++i)
+						indices.put(c.getIndex(i));
+					b.position(rows * 4);
+					FloatBuffer memberships = b.asFloatBuffer();
+					for (int i = 0; i < rows; ++i)
+						memberships.put(c.getMembership(i));
+					b.position(b.capacity());
+					writeFully(channel, b);
+				}
+				channel.force(true);
+			}
+			Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("can't write cache file: " + cache, e);
+			tmp.delete();
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer b) throws IOException {
+		while (b.hasRemaining())
+			if (channel.read(b) < 0)
+				throw new IOException("unexpected end of file");
+		b.flip();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b) throws IOException {
+		b.flip();
+		while (b.hasRemaining())
+			channel.write(b);
+	}
+
+	private static long clusterSize(int rows) {
+		return rows * 8L;
+	}
+
+	private static long fileSize(int clusters, int rows) {
+		return HEADER_SIZE + clusters * clusterSize(rows);
+	}
+
+	/**
+	 * checks the size, modification time and content hash in the header against the given source file
+	 */
+	private static boolean isSameSource(ByteBuffer header, File source) throws IOException {
+		final long size = header.getLong();
+		final long modified = header.getLong();
+		byte[] hash = new byte[HASH_SIZE];
+		header.get(hash);
+		if (size != source.length())
+			return false;
+		if (modified == source.lastModified())
+			return true;
+		return Arrays.equals(hash, hash(source));
+	}
+
+	private static File getSource(Table lOrZ) {
+		DataSetDescription desc = lOrZ.getDataDomain().getDataSetDescription();
+		if (desc == null || desc.getDataSourcePath() == null)
+			return null;
+		File source = new File(desc.getDataSourcePath());
+		return source.isFile() ? source : null;
+	}
+
+	/**
+	 * @param lOrZ
+	 * @return the cache file of the given table or null if it can't be cached
+	 */
+	public static File getCacheFile(Table lOrZ) {
+		final Activator activator = Activator.getDefault();
+		if (activator == null)
+			return null;
+		final File source = getSource(lOrZ);
+		if (source == null)
+			return null;
+		File dir = new File(activator.getStateLocation().toFile(), "lzcache");
+		if (!dir.isDirectory() && !dir.mkdirs())
+			return null;
+		try {
+			return new File(dir, toHex(sha1(source.getCanonicalPath().getBytes("UTF-8"))) + ".fzc");
+		} catch (IOException e) {
+			log.warn("can't resolve file: " + source, e);
+			return null;
+		}
+	}
+
+	/**
+	 * computes the SHA-1 hash of the content of the given file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] hash(File file) throws IOException {
+		MessageDigest digest = sha1();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			while (channel.read(buffer) > 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+		return digest.digest();
+	}
+
+	private static byte[] sha1(byte[] data) throws IOException {
+		return sha1().digest(data);
+	}
+
+	private static MessageDigest sha1() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static String toHex(byte[] data) {
+		StringBuilder b = new StringBuilder();
+		for (byte v : data)
+			b.append(String.format("%02x", v));
+		return b.toString();
+	}
+}
@@ -11,10 +11,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.caleydo.core.data.collection.EDataClass;
 import org.caleydo.core.data.collection.EDimension;
@@ -34,6 +35,7 @@ import org.caleydo.core.id.IDCategory;
 import org.caleydo.core.id.IDType;
 import org.caleydo.core.serialize.ASerializedView;
 import org.caleydo.core.util.collection.Pair;
+import org.caleydo.core.util.logging.Logger;
 import org.caleydo.core.view.opengl.canvas.AGLView;
 import org.caleydo.core.view.opengl.canvas.ATableBasedView;
 import org.caleydo.core.view.opengl.canvas.GLThreadListenerWrapper;
@@ -44,6 +46,7 @@ import org.caleydo.core.view.opengl.layout2.view.AMultiTablePerspectiveElementVi
 import org.caleydo.view.bicluster.elem.BiClustering;
 import org.caleydo.view.bicluster.elem.GLRootElement;
 import org.caleydo.view.bicluster.event.MaxThresholdChangeEvent;
+import org.caleydo.view.bicluster.internal.ForkJoinPools;
 import org.caleydo.view.bicluster.sorting.FuzzyClustering;
 
 import com.google.common.base.Predicate;
@@ -67,6 +70,7 @@ import com.google.common.collect.Lists;
 public class GLBiCluster extends AMultiTablePerspectiveElementView implements IGLKeyListener {
 	public static final String VIEW_TYPE = "org.caleydo.view.bicluster";
 	public static final String VIEW_NAME = "Furby";
+	private static final Logger log = Logger.create(GLBiCluster.class);
 
 	private TablePerspective x, l, z;
 
@@ -160,13 +164,16 @@ public class GLBiCluster extends AMultiTablePerspectiveElementView implements IG
 		Table Z = z.getDataDomain().getTable();
 		int bcCountData = L.size(); // Nr of BCs in L & Z
 
-		ExecutorService service = Executors.newFixedThreadPool(2);
-		Future<List<FuzzyClustering>> lClusterings = service.submit(new ScanLZTable(L));
-		Future<List<FuzzyClustering>> zClusterings = service.submit(new ScanLZTable(Z));
+		ForkJoinPool pool = ForkJoinPools.get();
+		ScanLZTable lScan = new ScanLZTable(L);
+		ScanLZTable zScan = new ScanLZTable(Z);
+		pool.execute(lScan);
+		pool.execute(zScan);
 
 		try {
-			List<FuzzyClustering> lClustering = lClusterings.get();
-			List<FuzzyClustering> zClustering = zClusterings.get();
+			awaitScan(lScan, zScan);
+			List<FuzzyClustering> lClustering = lScan.get();
+			List<FuzzyClustering> zClustering = zScan.get();
 			assert lClustering.size() == zClustering.size() && lClustering.size() == bcCountData;
 			float maxL = Float.NEGATIVE_INFINITY;
 			float maxZ = Float.NEGATIVE_INFINITY;
@@ -180,13 +187,37 @@ public class GLBiCluster extends AMultiTablePerspectiveElementView implements IG
 			maxDimThreshold = maxZ;
 			return Pair.make(lClustering, zClustering);
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			lScan.cancel(true);
+			zScan.cancel(true);
+			Thread.currentThread().interrupt();
 			throw new IllegalStateException(e);
 		} catch (ExecutionException e) {
-			e.printStackTrace();
+			log.error("can't scan the L and Z tables", e);
 			throw new IllegalStateException(e);
-		} finally {
-			service.shutdown();
+		}
+	}
+
+	/**
+	 * waits till both scans are done and reports the progress in the meanwhile
+	 *
+	 * @param lScan
+	 * @param zScan
+	 * @throws InterruptedException
+	 */
+	private static void awaitScan(ScanLZTable lScan, ScanLZTable zScan) throws InterruptedException {
+		final int total = lScan.getTotal() + zScan.getTotal();
+		while (!lScan.isDone() || !zScan.isDone()) {
+			try {
+				if (!lScan.isDone())
+					lScan.get(1, TimeUnit.SECONDS);
+				else
+					zScan.get(1, TimeUnit.SECONDS);
+			} catch (TimeoutException e) {
+				log.info(String.format("scanning L and Z: %d of %d biclusters", lScan.getDone() + zScan.getDone(),
+						total));
+			} catch (ExecutionException | CancellationException e) {
+				return; // will be reported by the caller
+			}
 		}
 	}
 
@@ -5,44 +5,113 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.caleydo.core.data.collection.table.Table;
 import org.caleydo.view.bicluster.sorting.FuzzyClustering;
-import org.caleydo.view.bicluster.sorting.IntFloat;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSortedSet;
 
 /**
  * scan the L or Z table and produce a list of {@link FuzzyClustering} instances
- * 
+ *
+ * the scan is split per bicluster column, such that a {@link java.util.concurrent.ForkJoinPool} can process the
+ * columns in parallel. Results are cached using {@link FuzzyClusteringCache}
+ *
  * @author Samuel Gratzl
- * 
+ *
  */
-public class ScanLZTable implements Callable<List<FuzzyClustering>> {
+public class ScanLZTable extends RecursiveTask<List<FuzzyClustering>> {
+	private static final long serialVersionUID = 1L;
+
 	private final Table lOrZ;
+	/**
+	 * number of already scanned columns
+	 */
+	private final AtomicInteger done = new AtomicInteger(0);
 
 	public ScanLZTable(Table lOrZ) {
 		this.lOrZ = lOrZ;
 	}
 
+	/**
+	 * @return the total number of columns to scan
+	 */
+	public int getTotal() {
+		return lOrZ.size();
+	}
+
+	/**
+	 * @return the number of already scanned columns
+	 */
+	public int getDone() {
+		return done.get();
+	}
+
 	@Override
-	public List<FuzzyClustering> call() throws Exception {
-		final int rows = lOrZ.depth();
+	protected List<FuzzyClustering> compute() {
 		final int clusters = lOrZ.size();
 
-		List<FuzzyClustering> l = new ArrayList<>(clusters);
-		for (int i = 0; i < clusters; ++i) {
-			ImmutableSortedSet.Builder<IntFloat> b = ImmutableSortedSet.orderedBy(IntFloat.BY_MEMBERSHIP);
-			for (int j = 0; j < rows; ++j) {
-				float p = lOrZ.getRaw(i, j);
-				b.add(new IntFloat(j, p));
+		final File cache = FuzzyClusteringCache.getCacheFile(lOrZ);
+		List<FuzzyClustering> cached = FuzzyClusteringCache.load(cache, lOrZ);
+		if (cached != null) {
+			done.set(clusters);
+			return cached;
+		}
+
+		FuzzyClustering[] r = new FuzzyClustering[clusters];
+		new ScanColumns(0, clusters, r).invoke();
+		if (isCancelled())
+			return ImmutableList.of();
+		List<FuzzyClustering> result = ImmutableList.copyOf(Arrays.asList(r));
+		FuzzyClusteringCache.store(cache, lOrZ, result);
+		return result;
+	}
+
+	private FuzzyClustering scan(int column) {
+		final int rows = lOrZ.depth();
+		float[] raw = new float[rows];
+		for (int j = 0; j < rows; ++j) {
+			raw[j] = lOrZ.getRaw(column, j);
+		}
+		return FuzzyClustering.of(raw);
+	}
+
+	/**
+	 * scans the columns [from, to) by recursively splitting the range down to single columns
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private final class ScanColumns extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final FuzzyClustering[] r;
+
+		public ScanColumns(int from, int to, FuzzyClustering[] r) {
+			this.from = from;
+			this.to = to;
+			this.r = r;
+		}
+
+		@Override
+		protected void compute() {
+			if (ScanLZTable.this.isCancelled() || from >= to)
+				return;
+			if (to - from == 1) {
+				r[from] = scan(from);
+				done.incrementAndGet();
+				return;
 			}
-			l.add(new FuzzyClustering(b.build()));
+			final int mid = (from + to) >>> 1;
+			invokeAll(new ScanColumns(from, mid, r), new ScanColumns(mid, to, r));
 		}
-		return ImmutableList.copyOf(l);
 	}
 }
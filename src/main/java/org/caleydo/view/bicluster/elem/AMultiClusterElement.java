@@ -90,7 +90,7 @@ public abstract class AMultiClusterElement extends ClusterElement {
 	@Override
 	public final float getDimPosOf(int id) {
 		if (isFocused()) {
-			int ind = getDimVirtualArray().indexOf(id);
+			int ind = getDimIndexOf(id);
 			return content.getDimensionPos(ind);
 		} else {
 			return getDimIndexOf(id) * getSize().x() / getDimVirtualArray().size();
@@ -100,7 +100,7 @@ public abstract class AMultiClusterElement extends ClusterElement {
 	@Override
 	public final float getRecPosOf(int id) {
 		if (isFocused()) {
-			int ind = getRecVirtualArray().indexOf(id);
+			int ind = getRecIndexOf(id);
 			return content.getRecordPos(ind);
 		} else {
 			return getRecIndexOf(id) * getSize().y() / getRecVirtualArray().size();
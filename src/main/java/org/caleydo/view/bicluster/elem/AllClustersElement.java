@@ -24,6 +24,7 @@ import org.caleydo.core.view.opengl.layout2.GLElementContainer;
 import org.caleydo.view.bicluster.elem.layout.AForceBasedLayout;
 import org.caleydo.view.bicluster.elem.layout.ForceBasedLayoutTuned2;
 import org.caleydo.view.bicluster.elem.toolbar.AToolBarElement;
+import org.caleydo.view.bicluster.util.UniformGrid;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -47,6 +48,10 @@ public class AllClustersElement extends GLElementContainer {
 
 	@DeepScan
 	private final AForceBasedLayout layout = new ForceBasedLayoutTuned2(this);
+	/**
+	 * spatial index of the clusters, see {@link #isClusterCollision(ClusterElement)}
+	 */
+	private final UniformGrid grid = new UniformGrid(100);
 
 
 	public AllClustersElement(GLRootElement glRootElement) {
@@ -231,6 +236,17 @@ public class AllClustersElement extends GLElementContainer {
 		return findParent(GLRootElement.class).getToolbars();
 	}
 
+	/**
+	 * @return the current overlap graph, see {@link GLRootElement#getOverlapGraph()}
+	 */
+	public OverlapGraph getOverlapGraph() {
+		return findParent(GLRootElement.class).getOverlapGraph();
+	}
+
+	public boolean isBandsEnabled(EDimension dim) {
+		return findParent(GLRootElement.class).isBandsEnabled(dim);
+	}
+
 	/**
 	 *
 	 */
@@ -248,6 +264,44 @@ public class AllClustersElement extends GLElementContainer {
 		}
 	}
 
+	/**
+	 * @return whether the given cluster collides with another visible one, using a margin of 10 pixel
+	 */
+	public boolean isClusterCollision(ClusterElement elem) {
+		updateGrid();
+		Vec2f size = elem.getSize();
+		Vec2f loc = elem.getLocation();
+		final int hits = grid.query(loc.x() - 10, loc.y() - 10, size.x() + 20, size.y() + 20);
+		for (int k = 0; k < hits; ++k) {
+			if (get(grid.getHit(k)) != elem)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * updates the spatial index with the current bounds of the clusters, just moved ones are relinked
+	 */
+	private void updateGrid() {
+		final int n = size();
+		float sum = 0;
+		for (GLElement child : this)
+			sum += child.getSize().x() + child.getSize().y();
+		if (n > 0)
+			grid.ensureCellSize(sum / (2 * n) + 20);
+		for (int i = 0; i < n; ++i) {
+			GLElement child = get(i);
+			if (!child.getVisibility().doRender()) {
+				grid.remove(i);
+				continue;
+			}
+			Vec2f size = child.getSize();
+			Vec2f loc = child.getLocation();
+			grid.update(i, loc.x() - 10, loc.y() - 10, size.x() + 20, size.y() + 20);
+		}
+		grid.truncate(n);
+	}
+
 	/**
 	 * @return the layout, see {@link #layout}
 	 */
@@ -10,8 +10,9 @@ import static org.caleydo.view.bicluster.elem.ZoomLogic.toDirection;
 import gleem.linalg.Vec2f;
 
 import java.awt.Dimension;
-import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.IdentityHashMap;
@@ -34,7 +35,6 @@ import org.caleydo.core.util.base.ILabeled;
 import org.caleydo.core.util.color.Color;
 import org.caleydo.core.util.logging.Logger;
 import org.caleydo.core.view.opengl.canvas.IGLMouseListener.IMouseEvent;
-import org.caleydo.core.view.opengl.layout2.GLElement;
 import org.caleydo.core.view.opengl.layout2.GLElementAccessor;
 import org.caleydo.core.view.opengl.layout2.GLGraphics;
 import org.caleydo.core.view.opengl.layout2.PickableGLElement;
@@ -52,13 +52,11 @@ import org.caleydo.view.bicluster.event.HideClusterEvent;
 import org.caleydo.view.bicluster.event.MouseOverBandEvent;
 import org.caleydo.view.bicluster.event.MouseOverClusterEvent;
 import org.caleydo.view.bicluster.event.SearchClusterEvent;
-import org.caleydo.view.bicluster.physics.MyDijkstra;
 import org.caleydo.view.bicluster.util.ClusterRenameEvent;
+import org.caleydo.view.bicluster.util.PositionIndex;
 import org.eclipse.swt.widgets.Display;
 
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 /**
  * e.g. a class for representing a cluster
  *
@@ -92,6 +90,37 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	private int totalDimOverlaps = 0;
 	private int totalRecOverlaps = 0;
 
+	/**
+	 * the current dimension / record members as bitset, used for fast overlap computation
+	 */
+	private final BitSet dimMembers = new BitSet();
+	private final BitSet recMembers = new BitSet();
+	/**
+	 * incremented whenever the members change, such that {@link Edge}s can skip unchanged pairs
+	 */
+	private int dimMembersVersion = 0;
+	private int recMembersVersion = 0;
+	/**
+	 * incremented whenever the virtual arrays change, i.e. the order of the members
+	 */
+	private int dimOrderVersion = 0;
+	private int recOrderVersion = 0;
+	/**
+	 * lazy positions of the ids within the virtual arrays, valid for {@link #dimPositionsVersion}
+	 */
+	private PositionIndex dimPositions, recPositions;
+	private int dimPositionsVersion, recPositionsVersion;
+	/**
+	 * the last change of the members, see {@link #getMembersDelta(EDimension)}
+	 */
+	private MembersDelta dimMembersDelta = null;
+	private MembersDelta recMembersDelta = null;
+
+	/**
+	 * index within the current {@link OverlapGraph}
+	 */
+	private int overlapGraphIndex = -1;
+
 	protected HeaderBar headerBar;
 
 	// whether hiding is enforced
@@ -184,8 +213,7 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	}
 
 	public final int minimalDistanceTo(ClusterElement other, int maxDistance) {
-		GLRootElement r = findRootElement();
-		return MyDijkstra.minDistance(this, other, maxDistance, r.isRecBandsEnabled(), r.isDimBandsEnabled());
+		return findRootElement().getHopDistances().minDistance(this, other, maxDistance);
 	}
 
 	@Override
@@ -344,6 +372,14 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 		return findParent(GLRootElement.class);
 	}
 
+	final int getOverlapGraphIndex() {
+		return overlapGraphIndex;
+	}
+
+	final void setOverlapGraphIndex(int overlapGraphIndex) {
+		this.overlapGraphIndex = overlapGraphIndex;
+	}
+
 	public final void addEdge(ClusterElement target, Edge edge) {
 		this.edges.put(target, edge);
 	}
@@ -354,6 +390,8 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 		Edge edge = edges.get(to);
 		if (edge == null)
 			return;
+		if ((!dim || edge.isUpToDate(EDimension.DIMENSION)) && (!rec || edge.isUpToDate(EDimension.RECORD)))
+			return; // neither of both clusters changed
 		if (dim) {
 			edge.updateDim();
 		}
@@ -383,6 +421,9 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 
 	protected void updateMyEdges(boolean dim, boolean rec) {
 		updateEdges(dim, rec, false);
+		GLRootElement root = findRootElement();
+		if (root != null)
+			root.invalidateOverlapGraph();
 		onEdgeUpdateDone();
 		for (Edge edge : edges.values()) {
 			edge.getOpposite(this).onEdgeUpdateDone();
@@ -405,6 +446,92 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 				.getDimensionPerspective().getPerspectiveID(), this));
 	}
 
+	/**
+	 * @param dim
+	 * @return the current members as bitset, not to be modified
+	 */
+	public final BitSet getMembers(EDimension dim) {
+		return dim.isHorizontal() ? dimMembers : recMembers;
+	}
+
+	/**
+	 * @param dim
+	 * @return a version number, that changes whenever the members of the given dimension change
+	 */
+	public final int getMembersVersion(EDimension dim) {
+		return dim.isHorizontal() ? dimMembersVersion : recMembersVersion;
+	}
+
+	/**
+	 * @param dim
+	 * @return a version number, that changes whenever the virtual array of the given dimension changes
+	 */
+	public final int getOrderVersion(EDimension dim) {
+		return dim.isHorizontal() ? dimOrderVersion : recOrderVersion;
+	}
+
+	/**
+	 * marks the virtual array of the given dimension as changed
+	 */
+	protected final void incOrderVersion(EDimension dim) {
+		if (dim.isHorizontal())
+			dimOrderVersion++;
+		else
+			recOrderVersion++;
+	}
+
+	/**
+	 * @param dim
+	 * @return the last change of the members of the given dimension or null if none
+	 */
+	public final MembersDelta getMembersDelta(EDimension dim) {
+		return dim.isHorizontal() ? dimMembersDelta : recMembersDelta;
+	}
+
+	/**
+	 * replaces the members of the given dimension
+	 *
+	 * @param dim
+	 * @param ids
+	 * @return whether the members changed
+	 */
+	protected final boolean setMembers(EDimension dim, Iterable<Integer> ids) {
+		BitSet next = new BitSet();
+		for (Integer id : ids)
+			next.set(id);
+		BitSet members = getMembers(dim);
+		if (members.equals(next))
+			return false;
+		BitSet added = (BitSet) next.clone();
+		added.andNot(members);
+		BitSet removed = (BitSet) members.clone();
+		removed.andNot(next);
+		return updateMembers(dim, added, removed);
+	}
+
+	/**
+	 * applies the given change to the members of the given dimension
+	 *
+	 * @param dim
+	 * @param added
+	 *            the indices to add, which aren't yet members
+	 * @param removed
+	 *            the indices to remove, which are members
+	 * @return whether the members changed
+	 */
+	protected final boolean updateMembers(EDimension dim, BitSet added, BitSet removed) {
+		if (added.isEmpty() && removed.isEmpty())
+			return false;
+		BitSet members = getMembers(dim);
+		members.andNot(removed);
+		members.or(added);
+		if (dim.isHorizontal())
+			dimMembersDelta = new MembersDelta(added, removed, ++dimMembersVersion);
+		else
+			recMembersDelta = new MembersDelta(added, removed, ++recMembersVersion);
+		return true;
+	}
+
 	protected abstract VirtualArray getDimVirtualArray();
 
 	protected abstract VirtualArray getRecVirtualArray();
@@ -436,42 +563,53 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	}
 
 	public final Iterable<ClusterElement> getOverlappingNeighbors(final EDimension dim) {
-		if (!findRootElement().isBandsEnabled(dim))
+		final GLRootElement root = findRootElement();
+		if (!root.isBandsEnabled(dim))
 			return Collections.emptyList();
-		return Iterables.filter(edges.keySet(), new Predicate<ClusterElement>() {
-			@Override
-			public boolean apply(ClusterElement input) {
-				return input != null && edges.get(input).getOverlap(dim) > 0;
-			}
-		});
+		final OverlapGraph graph = root.getOverlapGraph();
+		final int i = graph.indexOf(this);
+		if (i < 0)
+			return Collections.emptyList();
+		List<ClusterElement> r = new ArrayList<>(graph.end(i) - graph.start(i));
+		for (int k = graph.start(i); k < graph.end(i); ++k)
+			if (graph.overlap(dim, k) > 0)
+				r.add(graph.get(graph.neighbor(k)));
+		return r;
 	}
 
 	/**
 	 * @return
 	 */
 	public Iterable<? extends ClusterElement> getAnyOverlappingNeighbors() {
-		if (!findRootElement().isDimBandsEnabled() && !findRootElement().isRecBandsEnabled())
+		final GLRootElement root = findRootElement();
+		final boolean dimBands = root.isDimBandsEnabled();
+		final boolean recBands = root.isRecBandsEnabled();
+		if (!dimBands && !recBands)
 			return Collections.emptyList();
-		return Iterables.filter(edges.keySet(), new Predicate<ClusterElement>() {
-			@Override
-			public boolean apply(ClusterElement input) {
-				if (input == null)
-					return false;
-				final Edge edge = edges.get(input);
-				return edge.getDimOverlap() > 0 || edge.getRecOverlap() > 0;
-			}
-		});
+		final OverlapGraph graph = root.getOverlapGraph();
+		final int i = graph.indexOf(this);
+		if (i < 0)
+			return Collections.emptyList();
+		List<ClusterElement> r = new ArrayList<>(graph.end(i) - graph.start(i));
+		for (int k = graph.start(i); k < graph.end(i); ++k)
+			if (graph.isOverlapping(k, dimBands, recBands))
+				r.add(graph.get(graph.neighbor(k)));
+		return r;
 	}
 
 	public final Iterable<Edge> getOverlappingEdges(final EDimension dim) {
-		if (!findRootElement().isBandsEnabled(dim))
+		final GLRootElement root = findRootElement();
+		if (!root.isBandsEnabled(dim))
 			return Collections.emptyList();
-		return Iterables.filter(edges.values(), new Predicate<Edge>() {
-			@Override
-			public boolean apply(Edge input) {
-				return input != null && input.getOverlap(dim) > 0;
-			}
-		});
+		final OverlapGraph graph = root.getOverlapGraph();
+		final int i = graph.indexOf(this);
+		if (i < 0)
+			return Collections.emptyList();
+		List<Edge> r = new ArrayList<>(graph.end(i) - graph.start(i));
+		for (int k = graph.start(i); k < graph.end(i); ++k)
+			if (graph.overlap(dim, k) > 0)
+				r.add(graph.edge(k));
+		return r;
 	}
 
 	/**
@@ -593,23 +731,7 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	}
 
 	private boolean isClusterCollision() {
-		Vec2f mySize = getSize();
-		Vec2f myLoc = getLocation();
-		Rectangle myRec = new Rectangle((int) myLoc.x() - 10, (int) myLoc.y() - 10, (int) mySize.x() + 20,
-				(int) mySize.y() + 20);
-		for (GLElement jGLE : findAllClustersElement()) {
-			ClusterElement j = (ClusterElement) jGLE;
-			if (j == this)
-				continue;
-			Vec2f jSize = j.getSize();
-			Vec2f jLoc = j.getLocation();
-			Rectangle jRec = new Rectangle((int) jLoc.x() - 10, (int) jLoc.y() - 10, (int) jSize.x() + 20,
-					(int) jSize.y() + 20);
-			if (myRec.intersects(jRec)) {
-				return true;
-			}
-		}
-		return false;
+		return findAllClustersElement().isClusterCollision(this);
 	}
 
 
@@ -653,6 +775,7 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 			p.setFocus(null);
 		isHidden = true;
 		isHovered = false;
+		invalidateHopDistances();
 		updateVisibility();
 		EventPublisher.trigger(new HideClusterEvent(this));
 		relayoutParent();
@@ -725,6 +848,7 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 		if (!isHidden)
 			return;
 		isHidden = false;
+		invalidateHopDistances();
 		updateVisibility();
 		relayoutParent();
 	}
@@ -819,6 +943,12 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 		repaintChildren();
 	}
 
+	private void invalidateHopDistances() {
+		GLRootElement root = findRootElement();
+		if (root != null)
+			root.invalidateHopDistances();
+	}
+
 	protected final void updateVisibility() {
 		boolean should = shouldBeVisible();
 		boolean v = should && !forceHide;
@@ -846,7 +976,64 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	 * @return
 	 */
 	public List<List<Integer>> getListOfContinousSequences(EDimension dim, List<Integer> overlap) {
-		return getListOfContinousIDs2(overlap, getVirtualArray(dim).getIDs());
+		return getListOfContinousRuns(overlap, getVirtualArray(dim).getIDs(), getPositionIndex(dim));
+	}
+
+	/**
+	 * @param dim
+	 * @return the index of the positions within the virtual array of the given dimension, cached till the virtual
+	 *         array changes
+	 */
+	public final PositionIndex getPositionIndex(EDimension dim) {
+		final VirtualArray va = getVirtualArray(dim);
+		final int version = getOrderVersion(dim);
+		if (dim.isHorizontal()) {
+			if (dimPositions == null || dimPositionsVersion != version || dimPositions.size() != va.size()) {
+				dimPositions = PositionIndex.of(va.getIDs());
+				dimPositionsVersion = version;
+			}
+			return dimPositions;
+		}
+		if (recPositions == null || recPositionsVersion != version || recPositions.size() != va.size()) {
+			recPositions = PositionIndex.of(va.getIDs());
+			recPositionsVersion = version;
+		}
+		return recPositions;
+	}
+
+	/**
+	 * same result as {@link #getListOfContinousIDs2(List, List)} but in O(m log m) for m overlapping elements: the
+	 * positions of the overlap are looked up and sorted, each run of consecutive positions is a sequence
+	 *
+	 * @param positions
+	 *            the index of the given indices
+	 */
+	protected static List<List<Integer>> getListOfContinousRuns(List<Integer> overlap, List<Integer> indices,
+			PositionIndex positions) {
+		if (overlap.isEmpty())
+			return Collections.emptyList();
+		int[] p = new int[overlap.size()];
+		int m = 0;
+		for (Integer id : overlap) {
+			final int pos = positions.indexOf(id);
+			if (pos >= 0)
+				p[m++] = pos;
+		}
+		if (m == 0)
+			return Collections.emptyList();
+		if (m == indices.size()) // all
+			return ImmutableList.of(indices);
+		Arrays.sort(p, 0, m);
+		ImmutableList.Builder<List<Integer>> sequences = ImmutableList.builder();
+		int from = p[0];
+		for (int i = 1; i < m; ++i) {
+			if (p[i] == p[i - 1] || p[i] == p[i - 1] + 1)
+				continue;
+			sequences.add(indices.subList(from, p[i - 1] + 1));
+			from = p[i];
+		}
+		sequences.add(indices.subList(from, p[m - 1] + 1));
+		return sequences.build();
 	}
 
 	protected static List<List<Integer>> getListOfContinousIDs(List<Integer> overlap, List<Integer> indices) {
@@ -897,11 +1084,11 @@ public abstract class ClusterElement extends AnimatedGLElementContainer implemen
 	public abstract float getRecPosOf(int id);
 
 	public int getDimIndexOf(int value) {
-		return getDimVirtualArray().indexOf(value);
+		return getPositionIndex(EDimension.DIMENSION).indexOf(value);
 	}
 
 	public int getRecIndexOf(int value) {
-		return getRecVirtualArray().indexOf(value);
+		return getPositionIndex(EDimension.RECORD).indexOf(value);
 	}
 
 	public float getDimensionElementSize() {
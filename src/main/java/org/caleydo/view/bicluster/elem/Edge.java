@@ -5,23 +5,33 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem;
 
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Set;
-import java.util.TreeSet;
 
 import org.caleydo.core.data.collection.EDimension;
-import org.caleydo.core.data.virtualarray.VirtualArray;
 import org.caleydo.core.id.IDType;
+import org.caleydo.view.bicluster.util.BitSetSet;
 
 /**
+ * the overlap between two clusters, computed as the intersection of their membership bitsets. The overlap is only
+ * recomputed if the membership of one of the clusters changed since the last update
+ *
  * @author Samuel Gratzl
  *
  */
 public class Edge {
 	private final ClusterElement a;
 	private final ClusterElement b;
-	private final Set<Integer> recOverlap = new TreeSet<>();
-	private final Set<Integer> dimOverlap = new TreeSet<>();
+	private final BitSet recOverlap = new BitSet();
+	private final BitSet dimOverlap = new BitSet();
+	private int recOverlapSize = 0;
+	private int dimOverlapSize = 0;
+
+	/**
+	 * the membership versions of a and b the overlaps were computed with
+	 */
+	private int recVersionA = -1, recVersionB = -1;
+	private int dimVersionA = -1, dimVersionB = -1;
 
 	public Edge(ClusterElement a, ClusterElement b) {
 		this.a = a;
@@ -53,11 +63,11 @@ public class Edge {
 	}
 
 	public int getDimOverlap() {
-		return dimOverlap.size();
+		return dimOverlapSize;
 	}
 
 	public int getRecOverlap() {
-		return recOverlap.size();
+		return recOverlapSize;
 	}
 
 	public int getOverlap(EDimension dim) {
@@ -68,11 +78,11 @@ public class Edge {
 	 * @return
 	 */
 	public Collection<Integer> getRecOverlapIndices() {
-		return recOverlap;
+		return new BitSetSet(recOverlap);
 	}
 
 	public Collection<Integer> getDimOverlapIndices() {
-		return dimOverlap;
+		return new BitSetSet(dimOverlap);
 	}
 
 	public Collection<Integer> getOverlapIndices(EDimension dim) {
@@ -86,24 +96,40 @@ public class Edge {
 			updateRec();
 	}
 
+	/**
+	 * @param dim
+	 * @return the overlap as bitset, not to be modified
+	 */
+	public BitSet getOverlapBits(EDimension dim) {
+		return dim == EDimension.DIMENSION ? dimOverlap : recOverlap;
+	}
+
+	/**
+	 * @param dim
+	 * @return whether the overlap of the given dimension reflects the current members of both clusters
+	 */
+	public boolean isUpToDate(EDimension dim) {
+		if (dim == EDimension.DIMENSION)
+			return dimVersionA == a.getMembersVersion(dim) && dimVersionB == b.getMembersVersion(dim);
+		return recVersionA == a.getMembersVersion(dim) && recVersionB == b.getMembersVersion(dim);
+	}
+
 	/**
 	 * updates the dim overlap
 	 *
 	 * @return the difference to the previous stored values
 	 */
 	public int updateDim() {
-		final int bak = getDimOverlap();
-		final VirtualArray a_v = a.getDimVirtualArray();
-		final VirtualArray b_v = b.getDimVirtualArray();
-
-		final VirtualArray smaller = a_v.size() < b_v.size() ? a_v : b_v;
-		final VirtualArray opposite = smaller == a_v ? b_v : a_v;
+		final int versionA = a.getMembersVersion(EDimension.DIMENSION);
+		final int versionB = b.getMembersVersion(EDimension.DIMENSION);
+		if (versionA == dimVersionA && versionB == dimVersionB) // nothing changed
+			return 0;
 
-		dimOverlap.clear();
-		for (Integer id : smaller)
-			if (opposite.contains(id))
-				dimOverlap.add(id);
-		final int delta = getDimOverlap() - bak;
+		final int bak = dimOverlapSize;
+		dimOverlapSize = update(EDimension.DIMENSION, dimOverlap, dimOverlapSize, dimVersionA, dimVersionB);
+		dimVersionA = versionA;
+		dimVersionB = versionB;
+		final int delta = dimOverlapSize - bak;
 
 		a.incTotalDimOverlap(delta);
 		b.incTotalDimOverlap(delta);
@@ -111,25 +137,107 @@ public class Edge {
 	}
 
 	public int updateRec() {
-		final int bak = getRecOverlap();
-		final VirtualArray a_v = a.getRecVirtualArray();
-		final VirtualArray b_v = b.getRecVirtualArray();
+		final int versionA = a.getMembersVersion(EDimension.RECORD);
+		final int versionB = b.getMembersVersion(EDimension.RECORD);
+		if (versionA == recVersionA && versionB == recVersionB) // nothing changed
+			return 0;
 
-		final VirtualArray smaller = a_v.size() < b_v.size() ? a_v : b_v;
-		final VirtualArray opposite = smaller == a_v ? b_v : a_v;
-
-		recOverlap.clear();
-		for (Integer id : smaller)
-			if (opposite.contains(id))
-				recOverlap.add(id);
-
-		final int delta = getRecOverlap() - bak;
+		final int bak = recOverlapSize;
+		recOverlapSize = update(EDimension.RECORD, recOverlap, recOverlapSize, recVersionA, recVersionB);
+		recVersionA = versionA;
+		recVersionB = versionB;
+		final int delta = recOverlapSize - bak;
 
 		a.incTotalRecOverlap(delta);
 		b.incTotalRecOverlap(delta);
 		return delta;
 	}
 
+	/**
+	 * sets a precomputed overlap, which is based on the current members of both clusters
+	 *
+	 * @param dim
+	 * @param overlap
+	 * @param size
+	 *            the cardinality of the overlap
+	 */
+	void setOverlap(EDimension dim, BitSet overlap, int size) {
+		final int versionA = a.getMembersVersion(dim);
+		final int versionB = b.getMembersVersion(dim);
+		if (dim == EDimension.DIMENSION) {
+			final int delta = size - dimOverlapSize;
+			dimOverlap.clear();
+			dimOverlap.or(overlap);
+			dimOverlapSize = size;
+			dimVersionA = versionA;
+			dimVersionB = versionB;
+			a.incTotalDimOverlap(delta);
+			b.incTotalDimOverlap(delta);
+		} else {
+			final int delta = size - recOverlapSize;
+			recOverlap.clear();
+			recOverlap.or(overlap);
+			recOverlapSize = size;
+			recVersionA = versionA;
+			recVersionB = versionB;
+			a.incTotalRecOverlap(delta);
+			b.incTotalRecOverlap(delta);
+		}
+	}
+
+	/**
+	 * updates the given overlap, if just one of both clusters changed by a single step the change is applied
+	 * incrementally otherwise the overlap will be recomputed
+	 *
+	 * @return the new size of the overlap
+	 */
+	private int update(EDimension dim, BitSet overlap, int size, int seenVersionA, int seenVersionB) {
+		final boolean changedA = a.getMembersVersion(dim) != seenVersionA;
+		final boolean changedB = b.getMembersVersion(dim) != seenVersionB;
+		if (changedA != changedB) {
+			final ClusterElement changed = changedA ? a : b;
+			final MembersDelta delta = changed.getMembersDelta(dim);
+			if (delta != null && delta.getVersion() == (changedA ? seenVersionA : seenVersionB) + 1)
+				return apply(delta, getOpposite(changed).getMembers(dim), overlap, size);
+		}
+		return intersect(a.getMembers(dim), b.getMembers(dim), overlap);
+	}
+
+	/**
+	 * applies the change of one cluster to the overlap, costs O(changed elements)
+	 */
+	private static int apply(MembersDelta delta, BitSet opposite, BitSet overlap, int size) {
+		final BitSet removed = delta.getRemoved();
+		for (int i = removed.nextSetBit(0); i >= 0; i = removed.nextSetBit(i + 1)) {
+			if (overlap.get(i)) {
+				overlap.clear(i);
+				size--;
+			}
+		}
+		final BitSet added = delta.getAdded();
+		for (int i = added.nextSetBit(0); i >= 0; i = added.nextSetBit(i + 1)) {
+			if (opposite.get(i) && !overlap.get(i)) {
+				overlap.set(i);
+				size++;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * computes the intersection of a and b into the given target
+	 *
+	 * @return the number of elements in the intersection
+	 */
+	static int intersect(BitSet a, BitSet b, BitSet target) {
+		target.clear();
+		if (!a.intersects(b))
+			return 0;
+		target.or(a);
+		target.and(b);
+		return target.cardinality();
+	}
+
 	public IDType getIDType(EDimension dim) {
 		return dim == EDimension.DIMENSION ? a.getDimensionIDType() : a.getRecordIDType();
 	}
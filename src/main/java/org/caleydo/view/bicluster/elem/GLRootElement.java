@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -49,7 +50,6 @@ import org.caleydo.view.bicluster.elem.annotation.ALZHeatmapElement;
 import org.caleydo.view.bicluster.elem.annotation.CategoricalLZHeatmapElement;
 import org.caleydo.view.bicluster.elem.annotation.GoLZHeatmapElement;
 import org.caleydo.view.bicluster.elem.band.AllBandsElement;
-import org.caleydo.view.bicluster.elem.band.BandElement;
 import org.caleydo.view.bicluster.elem.toolbar.AToolBarElement;
 import org.caleydo.view.bicluster.elem.toolbar.LayoutToolBarElement;
 import org.caleydo.view.bicluster.elem.toolbar.ParameterToolBarElement;
@@ -61,6 +61,7 @@ import org.caleydo.view.bicluster.event.ShowHideBandsEvent;
 import org.caleydo.view.bicluster.event.ShowToolBarEvent;
 import org.caleydo.view.bicluster.event.ZoomEvent;
 import org.caleydo.view.bicluster.internal.prefs.MyPreferences;
+import org.caleydo.view.bicluster.physics.HopDistances;
 import org.caleydo.view.bicluster.sorting.CategoricalSortingStrategyFactory;
 import org.caleydo.view.bicluster.sorting.EThresholdMode;
 import org.caleydo.view.bicluster.sorting.IntFloat;
@@ -91,6 +92,15 @@ public class GLRootElement extends GLElementContainer {
 
 	private BiClustering clustering;
 	private final AllClustersElement clusters = new AllClustersElement(this);
+	private final ThresholdUpdater thresholdUpdater = new ThresholdUpdater();
+	/**
+	 * lazy created overlap graph, see {@link #getOverlapGraph()}
+	 */
+	private OverlapGraph overlapGraph;
+	/**
+	 * lazy computed hop distances of the overlap graph, see {@link #getHopDistances()}
+	 */
+	private HopDistances hopDistances;
 	private AllBandsElement bands;
 	private TablePerspective x;
 
@@ -206,6 +216,8 @@ public class GLRootElement extends GLElementContainer {
 
 	@Override
 	public void layout(int deltaTimeMs) {
+		if (!thresholdUpdater.isIdle())
+			updateThresholds();
 		for (AToolBarElement toolbar : toolbars)
 			if (toolbar.hasMoved()) {
 				clusters.relayout();
@@ -299,7 +311,7 @@ public class GLRootElement extends GLElementContainer {
 		for (AToolBarElement toolbar : getToolbars())
 			toolbar.init(biClustering);
 
-		bands = new AllBandsElement(x);
+		bands = new AllBandsElement(x, dim2label, rec2label);
 		this.clear();
 		this.add(zoomLayer);
 		this.add(bands);
@@ -319,7 +331,7 @@ public class GLRootElement extends GLElementContainer {
 		final float dimScale = scales.get(EDimension.DIMENSION);
 		final float recScale = scales.get(EDimension.RECORD);
 
-		log.info("creating bands");
+		log.info("creating edges");
 		final List<GLElement> l = clusters.asList();
 		for (int i = 0; i < l.size(); ++i) {
 			ClusterElement start = (ClusterElement) l.get(i);
@@ -330,10 +342,9 @@ public class GLRootElement extends GLElementContainer {
 				Edge edge = new Edge(start, end);
 				start.addEdge(end, edge);
 				end.addEdge(start, edge);
-				bands.add(new BandElement(edge, EDimension.RECORD, bands.getRecordSelectionManager(), rec2label));
-				bands.add(new BandElement(edge, EDimension.DIMENSION, bands.getDimensionSelectionManager(), dim2label));
 			}
 		}
+		invalidateOverlapGraph();
 		bands.updateSelection();
 		bands.updateStructure();
 	}
@@ -375,6 +386,8 @@ public class GLRootElement extends GLElementContainer {
 		this.x = null;
 		this.clustering = null;
 
+		thresholdUpdater.reset();
+		invalidateOverlapGraph();
 		this.clear();
 		clusters.clear();
 		this.bands = null;
@@ -382,32 +395,50 @@ public class GLRootElement extends GLElementContainer {
 
 	@ListenTo
 	private void listenTo(LZThresholdChangeEvent event) {
-		final EDimension dim = event.getDim();
-		final int numberThreshold = event.getNumberThreshold();
-		final float threshold = event.getThreshold();
-		final EThresholdMode mode = event.getMode();
+		// coalesced and computed in the background, see #layout
+		thresholdUpdater.push(event);
+		thresholdUpdater.schedule(allNormalClusters());
+	}
+
+	/**
+	 * applies the threshold changes computed in the background and schedules the pending ones
+	 */
+	private void updateThresholds() {
+		ThresholdUpdater.Result result = thresholdUpdater.takeResult();
+		if (result != null)
+			applyThresholds(result);
+		thresholdUpdater.schedule(allNormalClusters());
+	}
 
+	private void applyThresholds(ThresholdUpdater.Result result) {
 		// 1. update thresholds
-		Iterable<NormalClusterElement> allNormalClusters = allNormalClusters();
-		DoubleStatistics.Builder b = DoubleStatistics.builder();
 		final Vec2f total = getSize();
-		for (NormalClusterElement cluster : allNormalClusters) {
+		Map<EDimension, DoubleStatistics.Builder> scales = new EnumMap<>(EDimension.class);
+		for (ThresholdChange change : result.getChanges()) {
+			final EDimension dim = change.getDim();
+			final NormalClusterElement cluster = change.getCluster();
 			Dimension old = cluster.getSizes();
-			cluster.setThreshold(dim, threshold, numberThreshold, mode);
+			if (!cluster.applyThreshold(change)) // changed in the meantime
+				cluster.setThreshold(dim, change.getThreshold(), change.getNumberThreshold(), change.getMode());
 			Dimension new_ = cluster.getSizes();
 			float s = ZoomLogic.adaptScaleFactorToSize(dim, old, new_, cluster.getZoom(EDimension.DIMENSION),
 					cluster.getZoom(EDimension.RECORD), total.x(), total.y());
-			// System.out.println(s);
-			b.add(s);
+			if (!scales.containsKey(dim))
+				scales.put(dim, DoubleStatistics.builder());
+			scales.get(dim).add(s);
 		}
-		float s = (float) b.build().getMin();
-		if (s != 1.0f) {
-			for (ClusterElement elem : clusters.allClusters()) {
-				elem.scaleZoom(dim.select(s, 1), dim.select(1, s));
+		for (Map.Entry<EDimension, DoubleStatistics.Builder> entry : scales.entrySet()) {
+			final EDimension dim = entry.getKey();
+			float s = (float) entry.getValue().build().getMin();
+			if (s != 1.0f) {
+				for (ClusterElement elem : clusters.allClusters()) {
+					elem.scaleZoom(dim.select(s, 1), dim.select(1, s));
+				}
 			}
 		}
 
-		// 2. update overlaps
+		// 2. update overlaps, the remaining outdated ones are recomputed
+		result.applyOverlaps();
 		updateAllEdges();
 		clusters.relayout();
 	}
@@ -427,6 +458,7 @@ public class GLRootElement extends GLElementContainer {
 	private void onShowHideBandsEvent(ShowHideBandsEvent event) {
 		this.dimBands = event.isShowDimBand();
 		this.recBands = event.isShowRecBand();
+		invalidateHopDistances();
 		this.bands.relayout();
 		this.clusters.onChangeMaxDistance();
 	}
@@ -461,12 +493,47 @@ public class GLRootElement extends GLElementContainer {
 		for (ClusterElement elem : clusters.allClusters()) {
 			elem.updateOutgoingEdges(true, true);
 		}
+		invalidateOverlapGraph();
 		for (ClusterElement elem : clusters.allClusters()) {
 			elem.onEdgeUpdateDone();
 		}
 		bands.relayout();
 	}
 
+	/**
+	 * @return the graph of the currently overlapping clusters
+	 */
+	public OverlapGraph getOverlapGraph() {
+		if (overlapGraph == null)
+			overlapGraph = OverlapGraph.build(Lists.newArrayList(clusters.allClusters()));
+		return overlapGraph;
+	}
+
+	/**
+	 * marks the overlap graph as outdated, e.g. after an overlap change
+	 */
+	public void invalidateOverlapGraph() {
+		this.overlapGraph = null;
+		this.hopDistances = null;
+	}
+
+	/**
+	 * @return the hop distances between all clusters based on the current overlap graph and enabled bands
+	 */
+	public HopDistances getHopDistances() {
+		final OverlapGraph graph = getOverlapGraph();
+		if (hopDistances == null || hopDistances.getGraph() != graph)
+			hopDistances = HopDistances.compute(graph, recBands, dimBands);
+		return hopDistances;
+	}
+
+	/**
+	 * marks the hop distances as outdated, e.g. after a cluster was hidden or shown
+	 */
+	public void invalidateHopDistances() {
+		this.hopDistances = null;
+	}
+
 	/**
 	 * @param shared
 	 * @param selection
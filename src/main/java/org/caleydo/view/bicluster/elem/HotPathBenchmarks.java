@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem;
+
+import static org.caleydo.view.bicluster.internal.prefs.MyPreferences.UNBOUND_NUMBER;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.caleydo.view.bicluster.physics.Physics;
+import org.caleydo.view.bicluster.sorting.BandSorting;
+import org.caleydo.view.bicluster.sorting.EThresholdMode;
+import org.caleydo.view.bicluster.sorting.FuzzyClustering;
+import org.caleydo.view.bicluster.sorting.IntFloat;
+import org.caleydo.view.bicluster.util.BitSetSet;
+import org.caleydo.view.bicluster.util.MicroBenchmark;
+import org.caleydo.view.bicluster.util.PositionIndex;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * micro benchmarks of the hot paths between loading the L and Z tables and rendering the bands, run on synthetic
+ * tables derived from a seed. Usage:
+ *
+ * <pre>
+ * HotPathBenchmarks [seed] [records dimensions clusters]*
+ * </pre>
+ *
+ * the operations working on views, i.e. {@link org.caleydo.view.bicluster.ScanLZTable} and
+ * {@link Edge#updateDim()}, are measured by their kernels {@link FuzzyClustering#of(float[])} and
+ * {@link Edge#intersect(BitSet, BitSet, BitSet)}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class HotPathBenchmarks {
+	private static final float THRESHOLD = 0.5f;
+	private static final int TOP = 100;
+	private static final int RECTANGLES = 500;
+
+	private final String param;
+	/**
+	 * L: records x clusters, Z: dimensions x clusters, column wise
+	 */
+	private final float[][] l;
+	private final float[][] z;
+	private final List<FuzzyClustering> recClusterings = new ArrayList<>();
+	private final List<FuzzyClustering> dimClusterings = new ArrayList<>();
+	private final List<BitSet> recMembers = new ArrayList<>();
+	private final List<BitSet> dimMembers = new ArrayList<>();
+	private final double[] rects = new double[RECTANGLES * 4];
+	private final long seed;
+
+	public HotPathBenchmarks(long seed, int records, int dimensions, int clusters) {
+		this.seed = seed;
+		this.param = records + "x" + dimensions + "x" + clusters;
+		Random r = new Random(seed);
+		l = createTable(r, records, clusters);
+		z = createTable(r, dimensions, clusters);
+		for (int k = 0; k < clusters; ++k) {
+			recClusterings.add(FuzzyClustering.of(l[k]));
+			dimClusterings.add(FuzzyClustering.of(z[k]));
+			recMembers.add(toBitSet(recClusterings.get(k).filter(THRESHOLD, UNBOUND_NUMBER, EThresholdMode.ABS)));
+			dimMembers.add(toBitSet(dimClusterings.get(k).filter(THRESHOLD, UNBOUND_NUMBER, EThresholdMode.ABS)));
+		}
+		for (int i = 0; i < RECTANGLES; ++i) {
+			rects[i * 4] = r.nextDouble() * 2000;
+			rects[i * 4 + 1] = r.nextDouble() * 1000;
+			rects[i * 4 + 2] = 20 + r.nextDouble() * 200;
+			rects[i * 4 + 3] = 20 + r.nextDouble() * 200;
+		}
+	}
+
+	/**
+	 * memberships: mostly noise around zero and a few percent strong members per cluster
+	 */
+	private static float[][] createTable(Random r, int rows, int clusters) {
+		float[][] t = new float[clusters][rows];
+		for (int k = 0; k < clusters; ++k) {
+			final double members = 0.01 + r.nextDouble() * 0.09;
+			for (int i = 0; i < rows; ++i) {
+				float v = (float) (r.nextGaussian() * 0.15);
+				if (r.nextDouble() < members)
+					v += (r.nextBoolean() ? 1 : -1) * (0.5f + r.nextFloat());
+				t[k][i] = v;
+			}
+		}
+		return t;
+	}
+
+	private static BitSet toBitSet(List<IntFloat> l) {
+		BitSet b = new BitSet();
+		for (IntFloat f : l)
+			b.set(f.getIndex());
+		return b;
+	}
+
+	public List<MicroBenchmark> create() {
+		List<MicroBenchmark> r = new ArrayList<>();
+		r.add(scan());
+		for (EThresholdMode mode : EThresholdMode.values()) {
+			r.add(filter(mode, UNBOUND_NUMBER));
+			r.add(filter(mode, TOP));
+		}
+		r.add(intersect("Edge.intersect dim", dimMembers));
+		r.add(intersect("Edge.intersect rec", recMembers));
+		r.add(bandSorting());
+		r.addAll(continousIDs());
+		r.add(distance());
+		return r;
+	}
+
+	private MicroBenchmark scan() {
+		return new MicroBenchmark("ScanLZTable.scan (FuzzyClustering.of)", param) {
+			@Override
+			protected Object run() {
+				FuzzyClustering last = null;
+				for (float[] column : l)
+					last = FuzzyClustering.of(column);
+				for (float[] column : z)
+					last = FuzzyClustering.of(column);
+				return last;
+			}
+		};
+	}
+
+	private MicroBenchmark filter(final EThresholdMode mode, final int maxElements) {
+		final String name = "FuzzyClustering.filter " + mode + (maxElements == UNBOUND_NUMBER ? "" : " top" + TOP);
+		return new MicroBenchmark(name, param) {
+			@Override
+			protected Object run() {
+				int sum = 0;
+				for (FuzzyClustering c : recClusterings)
+					sum += c.filter(THRESHOLD, maxElements, mode).size();
+				for (FuzzyClustering c : dimClusterings)
+					sum += c.filter(THRESHOLD, maxElements, mode).size();
+				return Integer.valueOf(sum);
+			}
+		};
+	}
+
+	private MicroBenchmark intersect(String name, final List<BitSet> members) {
+		return new MicroBenchmark(name, param) {
+			private final BitSet target = new BitSet();
+
+			@Override
+			protected Object run() {
+				int sum = 0;
+				for (int i = 0; i < members.size(); ++i)
+					for (int j = i + 1; j < members.size(); ++j)
+						sum += Edge.intersect(members.get(i), members.get(j), target);
+				return Integer.valueOf(sum);
+			}
+		};
+	}
+
+	/**
+	 * @return per cluster the non empty overlaps with all other clusters, as used by the band sorting
+	 */
+	private List<List<BitSet>> overlaps(List<BitSet> members) {
+		List<List<BitSet>> r = new ArrayList<>();
+		for (int i = 0; i < members.size(); ++i) {
+			List<BitSet> bands = new ArrayList<>();
+			for (int j = 0; j < members.size(); ++j) {
+				if (i == j)
+					continue;
+				BitSet overlap = new BitSet();
+				if (Edge.intersect(members.get(i), members.get(j), overlap) > 0)
+					bands.add(overlap);
+			}
+			r.add(bands);
+		}
+		return r;
+	}
+
+	private MicroBenchmark bandSorting() {
+		final List<List<BitSet>> overlaps = overlaps(recMembers);
+		return new MicroBenchmark("BandSorting rec", param) {
+			@Override
+			protected Object run() {
+				int sum = 0;
+				for (List<BitSet> bands : overlaps) {
+					if (bands.isEmpty())
+						continue;
+					for (Integer i : new BandSorting(bands))
+						sum += i.intValue();
+				}
+				return Integer.valueOf(sum);
+			}
+		};
+	}
+
+	private List<MicroBenchmark> continousIDs() {
+		// the members in the order of the cluster and the overlaps as sorted lists, see BandElement
+		final List<List<Integer>> indices = new ArrayList<>();
+		final List<PositionIndex> positions = new ArrayList<>();
+		final List<List<Integer>> overlaps = new ArrayList<>();
+		final int clusters = recMembers.size();
+		for (int i = 0; i < clusters; ++i) {
+			List<Integer> order = new ArrayList<>();
+			for (IntFloat f : recClusterings.get(i).filter(THRESHOLD, UNBOUND_NUMBER, EThresholdMode.ABS))
+				order.add(f.getIndex());
+			for (int j = 0; j < clusters; ++j) {
+				BitSet overlap = new BitSet();
+				if (i == j || Edge.intersect(recMembers.get(i), recMembers.get(j), overlap) == 0)
+					continue;
+				indices.add(order);
+				positions.add(PositionIndex.of(order));
+				overlaps.add(ImmutableSortedSet.copyOf(new BitSetSet(overlap)).asList());
+			}
+		}
+		List<MicroBenchmark> r = new ArrayList<>(2);
+		r.add(new MicroBenchmark("ClusterElement.getListOfContinousIDs2", param) {
+			@Override
+			protected Object run() {
+				int sum = 0;
+				for (int i = 0; i < indices.size(); ++i)
+					sum += ClusterElement.getListOfContinousIDs2(overlaps.get(i), indices.get(i)).size();
+				return Integer.valueOf(sum);
+			}
+		});
+		r.add(new MicroBenchmark("ClusterElement.getListOfContinousRuns", param) {
+			@Override
+			protected Object run() {
+				int sum = 0;
+				for (int i = 0; i < indices.size(); ++i)
+					sum += ClusterElement.getListOfContinousRuns(overlaps.get(i), indices.get(i), positions.get(i))
+							.size();
+				return Integer.valueOf(sum);
+			}
+		});
+		return r;
+	}
+
+	private MicroBenchmark distance() {
+		return new MicroBenchmark("Physics.distance", RECTANGLES + " rects") {
+			private final double[] result = new double[Physics.DISTANCE_SIZE];
+			private final Random random = new Random(seed);
+
+			@Override
+			protected Object run() {
+				double sum = 0;
+				for (int i = 0; i < RECTANGLES; ++i) {
+					for (int j = i + 1; j < RECTANGLES; ++j) {
+						Physics.distance(rects[i * 4], rects[i * 4 + 1], rects[i * 4 + 2], rects[i * 4 + 3],
+								rects[j * 4], rects[j * 4 + 1], rects[j * 4 + 2], rects[j * 4 + 3], result, random);
+						sum += result[Physics.DISTANCE_LENGTH];
+					}
+				}
+				return Double.valueOf(sum);
+			}
+		};
+	}
+
+	public static void main(String[] args) {
+		final long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+		List<int[]> sizes = new ArrayList<>();
+		for (int i = 1; i + 2 < args.length; i += 3)
+			sizes.add(new int[] { Integer.parseInt(args[i]), Integer.parseInt(args[i + 1]),
+					Integer.parseInt(args[i + 2]) });
+		if (sizes.isEmpty())
+			sizes = ImmutableList.of(new int[] { 1000, 100, 20 }, new int[] { 20000, 1000, 50 });
+
+		System.out.println(MicroBenchmark.header());
+		for (int[] size : sizes) {
+			for (MicroBenchmark b : new HotPathBenchmarks(seed, size[0], size[1], size[2]).create())
+				System.out.println(b.measure());
+		}
+	}
+}
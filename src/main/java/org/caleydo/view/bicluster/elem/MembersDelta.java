@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem;
+
+import java.util.BitSet;
+
+/**
+ * the change of the members of a {@link ClusterElement} in one dimension, i.e. the indices that were added and
+ * removed to get to the given members version
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class MembersDelta {
+	private final BitSet added;
+	private final BitSet removed;
+	private final int version;
+
+	MembersDelta(BitSet added, BitSet removed, int version) {
+		this.added = added;
+		this.removed = removed;
+		this.version = version;
+	}
+
+	/**
+	 * @return the added indices, not to be modified
+	 */
+	public BitSet getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return the removed indices, not to be modified
+	 */
+	public BitSet getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return the members version this delta leads to
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of changed indices
+	 */
+	public int size() {
+		return added.cardinality() + removed.cardinality();
+	}
+}
@@ -12,6 +12,7 @@ import static org.caleydo.view.bicluster.internal.prefs.MyPreferences.getRecTopN
 
 import java.awt.Dimension;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -82,6 +83,12 @@ public class NormalClusterElement extends AMultiClusterElement {
 
 	protected boolean showThreshold;
 
+	/**
+	 * the last filter results, used for computing the change of a threshold update
+	 */
+	private List<IntFloat> dimFiltered = null;
+	private List<IntFloat> recFiltered = null;
+
 	protected ISortingStrategy dimSorter = MembershipSortingStrategy.FACTORY_INC.create(this, EDimension.DIMENSION);
 	protected ISortingStrategy recSorter = MembershipSortingStrategy.FACTORY_INC.create(this, EDimension.RECORD);
 
@@ -342,7 +349,50 @@ public class NormalClusterElement extends AMultiClusterElement {
 		this.recThreshBar.setValue(recThreshold, recThresholdMode);
 		this.dimThreshBar.setValue(dimThreshold, dimThresholdMode);
 
-		resort();
+		refilter();
+	}
+
+	/**
+	 * snapshots the state for computing the given threshold change in the background
+	 */
+	ThresholdChange prepareThreshold(EDimension dim, float t, int numberThreshold, EThresholdMode mode) {
+		if (dim.isDimension())
+			return new ThresholdChange(this, dim, t, numberThreshold, mode, dimClustering, dimFiltered);
+		return new ThresholdChange(this, dim, t, numberThreshold, mode, recClustering, recFiltered);
+	}
+
+	/**
+	 * applies a threshold change computed in the background
+	 *
+	 * @param change
+	 * @return false if this cluster changed in the meantime and the change can't be applied
+	 */
+	boolean applyThreshold(ThresholdChange change) {
+		final EDimension dim = change.getDim();
+		if (change.getVersion() != getMembersVersion(dim)
+				|| change.getPrevious() != (dim.isDimension() ? dimFiltered : recFiltered))
+			return false;
+		if (dim.isDimension()) {
+			this.dimThreshold = change.getThreshold();
+			this.dimNumberThreshold = change.getNumberThreshold();
+			this.dimThresholdMode = change.getMode();
+			this.dimFiltered = change.getNext();
+			this.dimThreshBar.setValue(dimThreshold, dimThresholdMode);
+		} else {
+			this.recThreshold = change.getThreshold();
+			this.recNumberThreshold = change.getNumberThreshold();
+			this.recThresholdMode = change.getMode();
+			this.recFiltered = change.getNext();
+			this.recThreshBar.setValue(recThreshold, recThresholdMode);
+		}
+		change.setApplied();
+		if (!updateMembers(dim, change.getAdded(), change.getRemoved()))
+			return true;
+		final ISortingStrategy sorter = dim.isDimension() ? dimSorter : recSorter;
+		updateVirtualArray(dim, sorter.apply(change.getNext()), sorter);
+		this.data.invalidateContainerStatistics();
+		fireTablePerspectiveChanged();
+		return true;
 	}
 
 	/**
@@ -382,6 +432,10 @@ public class NormalClusterElement extends AMultiClusterElement {
 
 	private void resort() {
 		Pair<List<IntFloat>, List<IntFloat>> p = filterData();
+		updateMembers(EDimension.DIMENSION, dimClustering, dimFiltered, p.getFirst());
+		updateMembers(EDimension.RECORD, recClustering, recFiltered, p.getSecond());
+		this.dimFiltered = p.getFirst();
+		this.recFiltered = p.getSecond();
 
 		List<IntFloat> dim = dimSorter.apply(p.getFirst());
 		List<IntFloat> rec = recSorter.apply(p.getSecond());
@@ -390,6 +444,41 @@ public class NormalClusterElement extends AMultiClusterElement {
 		fireTablePerspectiveChanged();
 	}
 
+	/**
+	 * a threshold changed: just the dimensions whose members changed will be resorted and updated, such that a
+	 * threshold change, which doesn't cross any membership value, is for free
+	 */
+	private void refilter() {
+		Pair<List<IntFloat>, List<IntFloat>> p = filterData();
+		final boolean dimChanged = updateMembers(EDimension.DIMENSION, dimClustering, dimFiltered, p.getFirst());
+		final boolean recChanged = updateMembers(EDimension.RECORD, recClustering, recFiltered, p.getSecond());
+		this.dimFiltered = p.getFirst();
+		this.recFiltered = p.getSecond();
+		if (!dimChanged && !recChanged)
+			return;
+
+		if (dimChanged)
+			updateVirtualArray(EDimension.DIMENSION, dimSorter.apply(p.getFirst()), dimSorter);
+		if (recChanged)
+			updateVirtualArray(EDimension.RECORD, recSorter.apply(p.getSecond()), recSorter);
+		this.data.invalidateContainerStatistics();
+		fireTablePerspectiveChanged();
+	}
+
+	/**
+	 * updates the members using the change between the previous and the next filter result
+	 *
+	 * @return whether the members changed
+	 */
+	private boolean updateMembers(EDimension dim, FuzzyClustering clustering, List<IntFloat> prev,
+			List<IntFloat> next) {
+		BitSet added = new BitSet();
+		BitSet removed = new BitSet();
+		if (prev == null || !clustering.diff(prev, next, added, removed))
+			return setMembers(dim, Lists.transform(next, IntFloat.TO_INDEX));
+		return updateMembers(dim, added, removed);
+	}
+
 	/**
 	 * filter the data according to the current thresholds
 	 *
@@ -410,16 +499,19 @@ public class NormalClusterElement extends AMultiClusterElement {
 	 * @param recs
 	 */
 	private void updateTablePerspective(List<IntFloat> dims, List<IntFloat> recs) {
-		fill(getDimVirtualArray(), dims, SortingStrategies.findGrouping(dimSorter));
-		fill(getRecVirtualArray(), recs, SortingStrategies.findGrouping(recSorter));
+		updateVirtualArray(EDimension.DIMENSION, dims, dimSorter);
+		updateVirtualArray(EDimension.RECORD, recs, recSorter);
 
 		this.data.invalidateContainerStatistics();
+	}
+
+	private void updateVirtualArray(EDimension dim, List<IntFloat> values, ISortingStrategy sorter) {
+		fill(getVirtualArray(dim), values, SortingStrategies.findGrouping(sorter));
+		incOrderVersion(dim);
 
 		for (ALZHeatmapElement annotation : annotations)
-			if (annotation.getDim().isHorizontal())
-				annotation.update(dims);
-			else
-				annotation.update(recs);
+			if (annotation.getDim().isHorizontal() == dim.isHorizontal())
+				annotation.update(values);
 	}
 
 	private static void fill(VirtualArray va, List<IntFloat> values, IGroupingStrategy grouper) {
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.caleydo.core.data.collection.EDimension;
+
+/**
+ * sparse adjacency structure of the overlapping clusters in compressed sparse row format, i.e. the neighbors of node i
+ * are stored in the range [{@link #start(int)}, {@link #end(int)}) sorted by their index.
+ *
+ * the graph is immutable and rebuilt once per overlap change, see {@link GLRootElement#getOverlapGraph()}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class OverlapGraph {
+	private final ClusterElement[] nodes;
+	private final Edge[] edges;
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final int[] dimOverlaps;
+	private final int[] recOverlaps;
+
+	private OverlapGraph(ClusterElement[] nodes, Edge[] edges, int[] offsets, int[] neighbors, int[] dimOverlaps,
+			int[] recOverlaps) {
+		this.nodes = nodes;
+		this.edges = edges;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+		this.dimOverlaps = dimOverlaps;
+		this.recOverlaps = recOverlaps;
+	}
+
+	/**
+	 * builds the graph of the given clusters, the index of a cluster is its position in the given list
+	 *
+	 * @param clusters
+	 * @return
+	 */
+	public static OverlapGraph build(List<ClusterElement> clusters) {
+		final int n = clusters.size();
+		ClusterElement[] nodes = clusters.toArray(new ClusterElement[n]);
+		for (int i = 0; i < n; ++i)
+			nodes[i].setOverlapGraphIndex(i);
+
+		int[] offsets = new int[n + 1];
+		List<Edge> edges = new ArrayList<>();
+		int[] buffer = new int[n];
+		for (int i = 0; i < n; ++i) {
+			offsets[i] = edges.size();
+			int k = 0;
+			for (Edge edge : nodes[i].edges.values()) {
+				if (edge.getDimOverlap() <= 0 && edge.getRecOverlap() <= 0)
+					continue;
+				int j = edge.getOpposite(nodes[i]).getOverlapGraphIndex();
+				if (j < 0 || j >= n || nodes[j] != edge.getOpposite(nodes[i]))
+					continue; // not part of this graph
+				buffer[k++] = j;
+			}
+			Arrays.sort(buffer, 0, k);
+			for (int l = 0; l < k; ++l)
+				edges.add(nodes[i].edges.get(nodes[buffer[l]]));
+		}
+		offsets[n] = edges.size();
+
+		final int m = edges.size();
+		int[] neighbors = new int[m];
+		int[] dimOverlaps = new int[m];
+		int[] recOverlaps = new int[m];
+		for (int i = 0; i < n; ++i) {
+			for (int k = offsets[i]; k < offsets[i + 1]; ++k) {
+				Edge edge = edges.get(k);
+				neighbors[k] = edge.getOpposite(nodes[i]).getOverlapGraphIndex();
+				dimOverlaps[k] = edge.getDimOverlap();
+				recOverlaps[k] = edge.getRecOverlap();
+			}
+		}
+		return new OverlapGraph(nodes, edges.toArray(new Edge[m]), offsets, neighbors, dimOverlaps, recOverlaps);
+	}
+
+	/**
+	 * creates a graph without clusters, e.g. for running the layouts without any view, see
+	 * {@link org.caleydo.view.bicluster.elem.layout.HeadlessLayoutRunner}. {@link #get(int)} and {@link #edge(int)}
+	 * return null
+	 *
+	 * @param offsets
+	 *            the n+1 row offsets
+	 * @param neighbors
+	 *            the neighbors of the rows, sorted within a row
+	 * @param dimOverlaps
+	 * @param recOverlaps
+	 * @return
+	 */
+	public static OverlapGraph of(int[] offsets, int[] neighbors, int[] dimOverlaps, int[] recOverlaps) {
+		final int n = offsets.length - 1;
+		final int m = neighbors.length;
+		return new OverlapGraph(new ClusterElement[n], new Edge[m], offsets, neighbors, dimOverlaps, recOverlaps);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	public ClusterElement get(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * @param cluster
+	 * @return the index of the given cluster or -1 if it is not part of this graph
+	 */
+	public int indexOf(ClusterElement cluster) {
+		final int i = cluster.getOverlapGraphIndex();
+		return i >= 0 && i < nodes.length && nodes[i] == cluster ? i : -1;
+	}
+
+	/**
+	 * @return the first position of the neighbors of node i
+	 */
+	public int start(int i) {
+		return offsets[i];
+	}
+
+	/**
+	 * @return the exclusive end position of the neighbors of node i
+	 */
+	public int end(int i) {
+		return offsets[i + 1];
+	}
+
+	/**
+	 * @return the node index of the neighbor at the given position
+	 */
+	public int neighbor(int k) {
+		return neighbors[k];
+	}
+
+	public Edge edge(int k) {
+		return edges[k];
+	}
+
+	public int dimOverlap(int k) {
+		return dimOverlaps[k];
+	}
+
+	public int recOverlap(int k) {
+		return recOverlaps[k];
+	}
+
+	public int overlap(EDimension dim, int k) {
+		return dim.isHorizontal() ? dimOverlaps[k] : recOverlaps[k];
+	}
+
+	/**
+	 * @return whether the neighbor at the given position overlaps in any of the enabled dimensions
+	 */
+	public boolean isOverlapping(int k, boolean dimBands, boolean recBands) {
+		return (dimBands && dimOverlaps[k] > 0) || (recBands && recOverlaps[k] > 0);
+	}
+
+	/**
+	 * @return the position of the neighbor b in the row of a or -1 if they don't overlap
+	 */
+	public int find(int a, int b) {
+		final int k = Arrays.binarySearch(neighbors, offsets[a], offsets[a + 1], b);
+		return k < 0 ? -1 : k;
+	}
+
+	public int getDimOverlap(int a, int b) {
+		final int k = find(a, b);
+		return k < 0 ? 0 : dimOverlaps[k];
+	}
+
+	public int getRecOverlap(int a, int b) {
+		final int k = find(a, b);
+		return k < 0 ? 0 : recOverlaps[k];
+	}
+
+	public int getOverlap(EDimension dim, ClusterElement a, ClusterElement b) {
+		final int ia = indexOf(a);
+		final int ib = indexOf(b);
+		if (ia < 0 || ib < 0)
+			return 0;
+		final int k = find(ia, ib);
+		return k < 0 ? 0 : overlap(dim, k);
+	}
+}
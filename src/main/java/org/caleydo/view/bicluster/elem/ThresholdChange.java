@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.view.bicluster.sorting.EThresholdMode;
+import org.caleydo.view.bicluster.sorting.FuzzyClustering;
+import org.caleydo.view.bicluster.sorting.IntFloat;
+
+import com.google.common.collect.Lists;
+
+/**
+ * a pending threshold change of a single cluster in one dimension.
+ *
+ * created on the render thread as snapshot of the cluster state, {@link #compute()} can be called from any thread as
+ * it just works on the snapshot, the result is applied using {@link NormalClusterElement#applyThreshold}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class ThresholdChange {
+	private final NormalClusterElement cluster;
+	private final EDimension dim;
+	private final float threshold;
+	private final int numberThreshold;
+	private final EThresholdMode mode;
+
+	private final FuzzyClustering clustering;
+	private final List<IntFloat> previous;
+	private final int version;
+	private final BitSet members;
+
+	private List<IntFloat> next;
+	private final BitSet added = new BitSet();
+	private final BitSet removed = new BitSet();
+
+	private boolean applied = false;
+
+	ThresholdChange(NormalClusterElement cluster, EDimension dim, float threshold, int numberThreshold,
+			EThresholdMode mode, FuzzyClustering clustering, List<IntFloat> previous) {
+		this.cluster = cluster;
+		this.dim = dim;
+		this.threshold = threshold;
+		this.numberThreshold = numberThreshold;
+		this.mode = mode;
+		this.clustering = clustering;
+		this.previous = previous;
+		this.version = cluster.getMembersVersion(dim);
+		this.members = (BitSet) cluster.getMembers(dim).clone();
+	}
+
+	/**
+	 * computes the new filter result and the change of the members
+	 */
+	void compute() {
+		next = clustering.filter(threshold, numberThreshold, mode);
+		if (previous == null || !clustering.diff(previous, next, added, removed)) {
+			BitSet n = new BitSet();
+			for (Integer id : Lists.transform(next, IntFloat.TO_INDEX))
+				n.set(id);
+			added.or(n);
+			added.andNot(members);
+			removed.or(members);
+			removed.andNot(n);
+		}
+		members.andNot(removed);
+		members.or(added);
+	}
+
+	NormalClusterElement getCluster() {
+		return cluster;
+	}
+
+	EDimension getDim() {
+		return dim;
+	}
+
+	float getThreshold() {
+		return threshold;
+	}
+
+	int getNumberThreshold() {
+		return numberThreshold;
+	}
+
+	EThresholdMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the filter result the change is based on
+	 */
+	List<IntFloat> getPrevious() {
+		return previous;
+	}
+
+	/**
+	 * @return the members version the change is based on
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	List<IntFloat> getNext() {
+		return next;
+	}
+
+	BitSet getAdded() {
+		return added;
+	}
+
+	BitSet getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * @return the members after the change
+	 */
+	BitSet getMembers() {
+		return members;
+	}
+
+	boolean isApplied() {
+		return applied;
+	}
+
+	void setApplied() {
+		this.applied = true;
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.core.util.logging.Logger;
+import org.caleydo.view.bicluster.event.LZThresholdChangeEvent;
+import org.caleydo.view.bicluster.internal.ForkJoinPools;
+
+/**
+ * coalesces {@link LZThresholdChangeEvent}s and computes the resulting filters and overlaps in the background.
+ *
+ * just the latest event per dimension is kept, while a computation is running new events are collected and processed
+ * as soon as the previous result was applied
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class ThresholdUpdater {
+	private static final Logger log = Logger.create(ThresholdUpdater.class);
+
+	private final Map<EDimension, LZThresholdChangeEvent> pending = new EnumMap<>(EDimension.class);
+	private Future<Result> running;
+
+	/**
+	 * @param event
+	 *            the new threshold replacing any pending one of the same dimension
+	 */
+	public void push(LZThresholdChangeEvent event) {
+		pending.put(event.getDim(), event);
+	}
+
+	/**
+	 * @return whether there is anything to do
+	 */
+	public boolean isIdle() {
+		return running == null && pending.isEmpty();
+	}
+
+	/**
+	 * discards all pending and running computations
+	 */
+	public void reset() {
+		pending.clear();
+		if (running != null)
+			running.cancel(true);
+		running = null;
+	}
+
+	/**
+	 * @return the result of the finished computation or null if there is none
+	 */
+	public Result takeResult() {
+		if (running == null || !running.isDone())
+			return null;
+		Future<Result> f = running;
+		running = null;
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("can't compute threshold change", e.getCause());
+		}
+		return null;
+	}
+
+	/**
+	 * starts the computation of the pending events, if there are any and no computation is running
+	 *
+	 * @param clusters
+	 */
+	public void schedule(Iterable<NormalClusterElement> clusters) {
+		if (running != null || pending.isEmpty())
+			return;
+		final Result r = new Result();
+		for (LZThresholdChangeEvent event : pending.values()) {
+			final EDimension dim = event.getDim();
+			Map<ClusterElement, ThresholdChange> changes = new IdentityHashMap<>();
+			for (NormalClusterElement cluster : clusters) {
+				ThresholdChange change = cluster.prepareThreshold(dim, event.getThreshold(),
+						event.getNumberThreshold(), event.getMode());
+				changes.put(cluster, change);
+				r.changes.add(change);
+			}
+			for (ThresholdChange change : changes.values()) {
+				for (Edge edge : change.getCluster().edges.values()) {
+					if (edge.getA() != change.getCluster() || !changes.containsKey(edge.getB()))
+						continue;
+					r.overlaps.add(new EdgeOverlap(edge, dim, change, changes.get(edge.getB())));
+				}
+			}
+		}
+		pending.clear();
+		running = ForkJoinPools.get().submit(new Callable<Result>() {
+			@Override
+			public Result call() {
+				for (ThresholdChange change : r.changes)
+					change.compute();
+				for (EdgeOverlap overlap : r.overlaps)
+					overlap.compute();
+				return r;
+			}
+		});
+	}
+
+	/**
+	 * the computed threshold changes and resulting overlaps
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	static final class Result {
+		private final List<ThresholdChange> changes = new ArrayList<>();
+		private final List<EdgeOverlap> overlaps = new ArrayList<>();
+
+		List<ThresholdChange> getChanges() {
+			return changes;
+		}
+
+		/**
+		 * swaps in the precomputed overlaps of all edges, whose clusters applied their change
+		 */
+		void applyOverlaps() {
+			for (EdgeOverlap overlap : overlaps)
+				overlap.apply();
+		}
+	}
+
+	private static final class EdgeOverlap {
+		private final Edge edge;
+		private final EDimension dim;
+		private final ThresholdChange a;
+		private final ThresholdChange b;
+		private final BitSet overlap = new BitSet();
+		private int size;
+
+		public EdgeOverlap(Edge edge, EDimension dim, ThresholdChange a, ThresholdChange b) {
+			this.edge = edge;
+			this.dim = dim;
+			this.a = a;
+			this.b = b;
+		}
+
+		void compute() {
+			size = Edge.intersect(a.getMembers(), b.getMembers(), overlap);
+		}
+
+		void apply() {
+			if (a.isApplied() && b.isApplied())
+				edge.setOverlap(dim, overlap, size);
+		}
+	}
+}
@@ -5,25 +5,42 @@
  ******************************************************************************/
 package org.caleydo.view.bicluster.elem.band;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.data.perspective.table.TablePerspective;
 import org.caleydo.core.data.selection.SelectionManager;
 import org.caleydo.core.data.selection.SelectionType;
 import org.caleydo.core.data.selection.TablePerspectiveSelectionMixin;
 import org.caleydo.core.event.EventListenerManager.DeepScan;
 import org.caleydo.core.event.EventListenerManager.ListenTo;
+import org.caleydo.core.id.IIDTypeMapper;
 import org.caleydo.core.view.opengl.layout2.GLElement;
 import org.caleydo.core.view.opengl.layout2.GLElementContainer;
 import org.caleydo.core.view.opengl.layout2.layout.IGLLayout;
 import org.caleydo.core.view.opengl.layout2.layout.IGLLayoutElement;
+import org.caleydo.view.bicluster.elem.Edge;
 import org.caleydo.view.bicluster.elem.GLRootElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
 import org.caleydo.view.bicluster.event.UpdateBandsEvent;
 
 import com.google.common.collect.Iterables;
 
 /**
+ * container of the bands between the clusters.
+ *
+ * bands are created on demand: just for the edges with an overlap between two visible clusters in an enabled
+ * dimension, see {@link #updateBands(GLRootElement)}. Bands that are no longer needed are removed, such that they
+ * don't render, pick or listen to events, and are recycled for other edges.
+ *
  * @author Michael Gillhofer
  *
  */
@@ -39,37 +56,66 @@ public class AllBandsElement extends GLElementContainer implements IGLLayout,
 		}
 	};
 
+	/**
+	 * max number of recycled bands per dimension
+	 */
+	private static final int MAX_RECYCLED = 64;
+
 	private BandElement selection;
 
 	boolean resortOnNextRun = true;
 
+	private final IIDTypeMapper<Integer, String> dim2label;
+	private final IIDTypeMapper<Integer, String> rec2label;
+
+	/**
+	 * the existing bands by their edge
+	 */
+	private final Map<EDimension, Map<Edge, BandElement>> bands = new EnumMap<>(EDimension.class);
+	private final Map<EDimension, Deque<BandElement>> recycled = new EnumMap<>(EDimension.class);
+	/**
+	 * the input of the last {@link #updateBands(GLRootElement)}: the graph, the enabled dimensions and the visible
+	 * clusters
+	 */
+	private OverlapGraph lastGraph;
+	private final BitSet lastEnabled = new BitSet();
+	private final BitSet lastVisible = new BitSet();
+	private final BitSet enabled = new BitSet();
+	private final BitSet visible = new BitSet();
+	private int stamp = 0;
+
 	/**
 	 * @param savedData
 	 */
-	public AllBandsElement(TablePerspective tablePerspective) {
+	public AllBandsElement(TablePerspective tablePerspective, IIDTypeMapper<Integer, String> dim2label,
+			IIDTypeMapper<Integer, String> rec2label) {
 		if (tablePerspective != null)
 			this.selectionMixin = new TablePerspectiveSelectionMixin(tablePerspective, this);
 		else
 			this.selectionMixin = null;
+		this.dim2label = dim2label;
+		this.rec2label = rec2label;
+		for (EDimension dim : EDimension.values()) {
+			bands.put(dim, new IdentityHashMap<Edge, BandElement>());
+			recycled.put(dim, new ArrayDeque<BandElement>());
+		}
 		setLayout(this);
 	}
 
 	@Override
 	public void doLayout(List<? extends IGLLayoutElement> children, float w, float h) {
-		GLRootElement root = findParent(GLRootElement.class);
 		for (IGLLayoutElement child : children) {
 			BandElement b = (BandElement) child.asElement();
-			if (!root.isBandsEnabled(b.getDimension()))
-				child.hide();
-			else {
-				child.setBounds(0, 0, w, h);
-				b.updatePosition();
-			}
+			child.setBounds(0, 0, w, h);
+			b.updatePosition();
 		}
 	}
 
 	@Override
 	public void layout(int deltaTimeMs) {
+		GLRootElement root = findParent(GLRootElement.class);
+		if (root != null)
+			updateBands(root);
 		if (resortOnNextRun) {
 			sortBy(byZDelta);
 			resortOnNextRun = false;
@@ -77,6 +123,94 @@ public class AllBandsElement extends GLElementContainer implements IGLLayout,
 		super.layout(deltaTimeMs);
 	}
 
+	/**
+	 * creates the missing and removes the no longer needed bands, if the overlaps, the visible clusters or the enabled
+	 * bands changed
+	 */
+	private void updateBands(GLRootElement root) {
+		final OverlapGraph graph = root.getOverlapGraph();
+		if (!changed(root, graph))
+			return;
+		stamp++;
+
+		for (EDimension dim : EDimension.values()) {
+			final Map<Edge, BandElement> existing = bands.get(dim);
+			if (root.isBandsEnabled(dim)) {
+				for (int i = 0; i < graph.size(); ++i) {
+					if (!graph.get(i).isVisible())
+						continue;
+					for (int k = graph.start(i); k < graph.end(i); ++k) {
+						final int j = graph.neighbor(k);
+						if (j <= i || graph.overlap(dim, k) <= 0 || !graph.get(j).isVisible())
+							continue;
+						final Edge edge = graph.edge(k);
+						BandElement b = existing.get(edge);
+						if (b == null) {
+							b = create(edge, dim);
+							existing.put(edge, b);
+							add(b);
+							resortOnNextRun = true;
+							relayout();
+						}
+						b.usedStamp = stamp;
+					}
+				}
+			}
+			for (Iterator<BandElement> it = existing.values().iterator(); it.hasNext();) {
+				BandElement b = it.next();
+				if (b.usedStamp != stamp) {
+					it.remove();
+					recycle(b);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether the graph, the enabled dimensions or the visible clusters changed since the last call
+	 */
+	private boolean changed(GLRootElement root, OverlapGraph graph) {
+		enabled.clear();
+		for (EDimension dim : EDimension.values())
+			if (root.isBandsEnabled(dim))
+				enabled.set(dim.ordinal());
+		visible.clear();
+		for (int i = 0; i < graph.size(); ++i)
+			if (graph.get(i).isVisible())
+				visible.set(i);
+		if (graph == lastGraph && enabled.equals(lastEnabled) && visible.equals(lastVisible))
+			return false;
+		lastGraph = graph;
+		lastEnabled.clear();
+		lastEnabled.or(enabled);
+		lastVisible.clear();
+		lastVisible.or(visible);
+		return true;
+	}
+
+	private BandElement create(Edge edge, EDimension dim) {
+		final SelectionManager manager = dim == EDimension.DIMENSION ? getDimensionSelectionManager()
+				: getRecordSelectionManager();
+		BandElement b = recycled.get(dim).poll();
+		if (b == null)
+			b = new BandElement(edge, dim, manager, dim == EDimension.DIMENSION ? dim2label : rec2label);
+		else
+			b.reuse(edge);
+		if (manager != null)
+			b.onSelectionUpdate(manager);
+		return b;
+	}
+
+	private void recycle(BandElement b) {
+		if (selection == b)
+			selection = null;
+		remove(b);
+		b.recycle();
+		final Deque<BandElement> pool = recycled.get(b.getDimension());
+		if (pool.size() < MAX_RECYCLED)
+			pool.push(b);
+	}
+
 	@ListenTo
 	private void onUpdateBandsEvent(UpdateBandsEvent event) {
 		relayout();
@@ -60,7 +60,7 @@ public class BandElement extends PickableGLElement implements IPickingLabelProvi
 	private static final float SELECTED_Z_DELTA = -2;
 	private static final float HOVERED_Z_DELTA = -1;
 
-	protected final Edge edge;
+	protected Edge edge;
 	private final EDimension dimension;
 	protected List<Integer> overlap;
 	private boolean hasSharedElementsWithSelection;
@@ -81,6 +81,21 @@ public class BandElement extends PickableGLElement implements IPickingLabelProvi
 
 	private float targetOpacityFactor = 1;
 	private BandFactory bandFactory;
+	/**
+	 * the state of the clusters {@link #band} was created for
+	 */
+	private final BandGeometryKey geometry = new BandGeometryKey();
+	/**
+	 * the continuous sequences of the overlap in both clusters, valid as long as the members and the virtual arrays
+	 * of both clusters are the ones of {@link #runsVersions}
+	 */
+	private List<List<Integer>> firstRuns, secondRuns;
+	private final int[] runsVersions = new int[4];
+
+	/**
+	 * the last update of {@link AllBandsElement} this band was needed in
+	 */
+	int usedStamp;
 
 	public BandElement(Edge edge, EDimension dimension, SelectionManager selectionManager,
 			IIDTypeMapper<Integer, String> id2label) {
@@ -99,6 +114,38 @@ public class BandElement extends PickableGLElement implements IPickingLabelProvi
 
 	}
 
+	/**
+	 * reuses this recycled band for another edge, see {@link #recycle()}
+	 */
+	void reuse(Edge edge) {
+		this.edge = edge;
+		geometry.invalidate();
+		firstRuns = secondRuns = null;
+		updateOverlap();
+		setZDeltaAccordingToState();
+	}
+
+	/**
+	 * resets the state of this band, which was removed as its edge doesn't need a band anymore
+	 */
+	void recycle() {
+		if (isMouseOver) // restore the other bands
+			EventPublisher.trigger(new MouseOverBandEvent(this, false));
+		isMouseOver = false;
+		isAnyThingHovered = false;
+		hasSharedElementsWithHover = false;
+		hasSharedElementsWithSelection = false;
+		actSelectedSplineID = -1;
+		actOpacityFactor = targetOpacityFactor = HIGH_OPACITY_FACTPOR;
+		overlap = ImmutableList.of();
+		band = null;
+		bandFactory = null;
+		splittedBands = null;
+		splines = null;
+		geometry.invalidate();
+		firstRuns = secondRuns = null;
+	}
+
 	/**
 	 * @return the dimension, see {@link #dimension}
 	 */
@@ -394,19 +441,20 @@ public class BandElement extends PickableGLElement implements IPickingLabelProvi
 	}
 
 	public void updateStructure() {
+		ClusterElement first = edge.getA();
+		ClusterElement second = edge.getB();
+		if (!geometry.update(first, second, dimension) && band != null)
+			return; // neither moved nor changed their members or order
 		this.band = null;
 		if (!updateOverlap())
 			return;
-		ClusterElement first = edge.getA();
-		ClusterElement second = edge.getB();
 		if (!areValidBounds(first.getBounds()) || !areValidBounds(second.getBounds()))
 			return;
-		List<List<Integer>> firstSubIndices = first.getListOfContinousSequences(dimension, overlap);
-		List<List<Integer>> secondSubIndices = second.getListOfContinousSequences(dimension, overlap);
-		if (firstSubIndices.size() == 0)
+		updateRuns(first, second);
+		if (firstRuns.size() == 0)
 			return;
 
-		this.bandFactory = createFactory(dimension, first, second, firstSubIndices, secondSubIndices, overlap);
+		this.bandFactory = createFactory(dimension, first, second, firstRuns, secondRuns, overlap);
 		this.band = bandFactory.getSimpleBand();
 
 		// lazy
@@ -430,6 +478,23 @@ public class BandElement extends PickableGLElement implements IPickingLabelProvi
 		repaintAll();
 	}
 
+	/**
+	 * recomputes the continuous sequences of the overlap, if the members or the order of a cluster changed
+	 */
+	private void updateRuns(ClusterElement first, ClusterElement second) {
+		final int a = first.getMembersVersion(dimension), b = first.getOrderVersion(dimension);
+		final int c = second.getMembersVersion(dimension), d = second.getOrderVersion(dimension);
+		if (firstRuns != null && runsVersions[0] == a && runsVersions[1] == b && runsVersions[2] == c
+				&& runsVersions[3] == d)
+			return;
+		firstRuns = first.getListOfContinousSequences(dimension, overlap);
+		secondRuns = second.getListOfContinousSequences(dimension, overlap);
+		runsVersions[0] = a;
+		runsVersions[1] = b;
+		runsVersions[2] = c;
+		runsVersions[3] = d;
+	}
+
 	private boolean updateOverlap() {
 		if (!edge.anyVisible())
 			return false;
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem.band;
+
+import gleem.linalg.Vec2f;
+
+import java.util.Arrays;
+
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.view.bicluster.elem.ClusterElement;
+
+/**
+ * the inputs the geometry of a band depends on: the quantized positions and sizes of both clusters, and the versions
+ * of their members and virtual arrays, which together determine the overlap and its partition into continuous
+ * sequences.
+ *
+ * a focused cluster lays out its elements on its own, thus its geometry is never considered to be unchanged
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class BandGeometryKey {
+	/**
+	 * quantization of coordinates: half pixels
+	 */
+	private static final float QUANTUM = 2;
+	private static final int PER_CLUSTER = 10;
+
+	private final int[] state = new int[PER_CLUSTER * 2];
+	private final int[] next = new int[PER_CLUSTER * 2];
+	private boolean valid = false;
+
+	/**
+	 * updates this key with the current state of the given clusters
+	 *
+	 * @return whether the geometry has to be recomputed
+	 */
+	boolean update(ClusterElement a, ClusterElement b, EDimension dim) {
+		boolean cacheable = fill(a, dim, 0);
+		cacheable = fill(b, dim, PER_CLUSTER) && cacheable;
+		final boolean changed = !valid || !cacheable || !Arrays.equals(state, next);
+		System.arraycopy(next, 0, state, 0, next.length);
+		valid = cacheable;
+		return changed;
+	}
+
+	/**
+	 * forces the next {@link #update(ClusterElement, ClusterElement, EDimension)} to report a change
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	private boolean fill(ClusterElement c, EDimension dim, int offset) {
+		final Vec2f loc = c.getLocation();
+		final Vec2f abs = c.getAbsoluteLocation();
+		final Vec2f size = c.getSize();
+		next[offset] = c.isVisible() ? 1 : 0;
+		next[offset + 1] = c.getMembersVersion(dim);
+		next[offset + 2] = c.getOrderVersion(dim);
+		next[offset + 3] = quantize(loc.x());
+		next[offset + 4] = quantize(loc.y());
+		next[offset + 5] = quantize(abs.x());
+		next[offset + 6] = quantize(abs.y());
+		next[offset + 7] = quantize(size.x());
+		next[offset + 8] = quantize(size.y());
+		next[offset + 9] = c.isFocused() ? 1 : 0;
+		return !c.isFocused();
+	}
+
+	private static int quantize(float v) {
+		if (Float.isNaN(v))
+			return Integer.MIN_VALUE;
+		return Math.round(v * QUANTUM);
+	}
+}
@@ -9,6 +9,7 @@ import gleem.linalg.Vec2f;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 
 import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.core.event.EventListenerManager.ListenTo;
@@ -27,21 +28,42 @@ import org.caleydo.view.bicluster.event.UpdateBandsEvent;
  */
 public abstract class AForceBasedLayout implements IGLLayout2 {
 	protected final AllClustersElement parent;
+	/**
+	 * source of all random decisions of the layout, see {@link #setSeed(long)}
+	 */
+	protected final Random random = new Random();
 
 	public AForceBasedLayout(AllClustersElement parent) {
 		this.parent = parent;
 	}
 
+	/**
+	 * makes the random decisions of the layout reproducible
+	 *
+	 * @param seed
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
 	public abstract void fillLayoutToolBar(ILayoutToolBar elem);
 
 	@ListenTo
 	private void listenTo(ForceChangeEvent e) {
 		setParameter(e.getName(), e.getValue());
+		parametersChanged();
 		parent.relayout();
 	}
 
 	protected abstract void setParameter(String name, float value);
 
+	/**
+	 * hook called after a parameter of the simulation changed
+	 */
+	protected void parametersChanged() {
+
+	}
+
 	@Override
 	public final boolean doLayout(List<? extends IGLLayoutElement> children, float w, float h, IGLLayoutElement parent,
 			int deltaTimeMs) {
@@ -5,124 +5,287 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem.layout;
 
-import java.util.ArrayList;
+import gleem.linalg.Vec2f;
+
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import org.caleydo.core.data.collection.EDimension;
+import org.caleydo.core.util.logging.Logger;
 import org.caleydo.core.view.opengl.layout2.GLElement;
 import org.caleydo.core.view.opengl.layout2.GLElementAccessor;
 import org.caleydo.core.view.opengl.layout2.layout.IGLLayoutElement;
 import org.caleydo.view.bicluster.elem.AllClustersElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
 import org.caleydo.view.bicluster.elem.toolbar.AToolBarElement;
+import org.caleydo.view.bicluster.internal.ForkJoinPools;
 import org.caleydo.view.bicluster.util.Vec2d;
 
 /**
  * tuned version of {@link ForceBasedLayout}
  *
+ * the simulation runs in the background on a snapshot of the bodies, the resulting positions are published via a
+ * double buffer and the render thread just interpolates towards the latest published positions
+ *
  * @author Samuel Gratzl
  *
  */
 public abstract class AForceBasedLayoutTuned extends AForceBasedLayout {
+	private static final Logger log = Logger.create(AForceBasedLayoutTuned.class);
+
 	private boolean isInitLayoutDone = false;
 
 	/**
-	 * counts the number of continuous "another round" calls, used for damping
+	 * number of iterations and convergence of the simulation steps, just accessed by the running step or if none is
+	 * running
+	 */
+	private final IterationScheduler scheduler = new IterationScheduler(12);
+
+	/**
+	 * the positions the render thread interpolates to and the ones the running simulation step writes to
+	 */
+	private Positions front = new Positions();
+	private Positions back = new Positions();
+	/**
+	 * the bodies of the simulation, reused from step to step
 	 */
-	private int continousLayoutDuration = 0;
+	private final ForcedBodies bodies = new ForcedBodies();
+	private final Vec2f location = new Vec2f();
+
+	/**
+	 * the currently running simulation step
+	 */
+	private Future<Boolean> running;
+	private long runningStart;
+	/**
+	 * duration of the last simulation step, used as interpolation interval
+	 */
+	private long stepDurationMs = 0;
+	/**
+	 * whether the last simulation step moved the bodies significantly
+	 */
+	private boolean lastAnotherRound = false;
+	/**
+	 * whether a parameter of the simulation was changed
+	 */
+	private boolean dirty = false;
+	/**
+	 * the input of the last simulation step for detecting changes
+	 */
+	private final SimulationInput lastInput = new SimulationInput();
 
 	public AForceBasedLayoutTuned(AllClustersElement parent) {
 		super(parent);
 	}
+
 	@Override
 	public boolean forceBasedLayout(List<? extends IGLLayoutElement> children, float w, float h, int deltaTimeMs) {
 		if (children.isEmpty())
 			return false;
 
-		List<ForcedBody> bodies = toForcedBodies(children);
-		List<ForcedBody> toolBars = toToolBarBodies(parent.getToolbars());
+		// publish the finished simulation step
+		if (running != null && running.isDone())
+			collect();
 
-		int iterations;
-		if (!isInitLayoutDone) {
-			initialLayout(bodies, w, h);
-			isInitLayoutDone = true;
-			iterations = 20;
-			// System.out.println("init all");
-		} else {
-			iterations = Math.max(1, computeNumberOfIterations(deltaTimeMs));
+		final boolean moving = interpolate(children, deltaTimeMs);
 
-			// init uninitialized bodies
-			for (ForcedBody body : bodies) {
-				if (body.isInvalid() && body.isVisible()) {
-					// System.out.println("init " + body);
-					initialPosition(body, w, h, bodies);
-				}
+		// idle till the input changes once the system is stable
+		if (running == null) {
+			final boolean changed = lastInput.update(children, w, h);
+			if (lastAnotherRound || dirty || changed) {
+				if (!lastAnotherRound) // new period of activity
+					scheduler.reset();
+				dirty = false;
+				schedule(children, w, h);
 			}
 		}
 
-		forcedBasedLayout(bodies, toolBars, iterations, w, h);
-
-		double totalDistanceSquared = 0;
-		double damping = time2damping(continousLayoutDuration);
-		for (ForcedBody body : bodies)
-			totalDistanceSquared += body.apply(damping);
-
-		final boolean anotherRound = totalDistanceSquared > 5 * 5;
-		if (anotherRound)
-			continousLayoutDuration += deltaTimeMs;
-		else
-			continousLayoutDuration = 0;
-		return anotherRound;
+		return running != null || moving;
 	}
 
-	protected abstract void initialPosition(ForcedBody body, float w, float h, List<ForcedBody> bodies);
-
-	protected abstract void initialLayout(List<ForcedBody> bodies, float w, float h);
+	@Override
+	protected void parametersChanged() {
+		dirty = true;
+	}
 
-	protected abstract void forcedBasedLayout(List<ForcedBody> bodies, List<ForcedBody> toolBars, final int iterations,
-			float w, float h);
 	/**
-	 * @param duration
-	 * @return
+	 * takes the result of the finished simulation step and swaps the buffers
 	 */
-	private static double time2damping(int duration) {
-		if (duration == 0)
-			return 1;
-		final double maxTime = 5000; // ms
-		final double minDamping = 0.00;
-		final double maxDamping = 1;
-		double factor = Math.max(minDamping, Math.min(maxDamping, 1 - (duration / maxTime)));
-		return factor;
+	private void collect() {
+		Future<Boolean> f = running;
+		running = null;
+		stepDurationMs = (System.nanoTime() - runningStart) / 1000000;
+		try {
+			lastAnotherRound = f.get();
+			Positions tmp = front;
+			front = back;
+			back = tmp;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("can't compute layout", e.getCause());
+			lastAnotherRound = false;
+		}
 	}
 
 	/**
-	 * @param toolbars
-	 * @return
+	 * moves the children towards the published positions
+	 *
+	 * @return whether any child is still moving
 	 */
-	private List<ForcedBody> toToolBarBodies(List<AToolBarElement> toolbars) {
-		List<ForcedBody> b = new ArrayList<>(toolbars.size());
-		for (AToolBarElement elem : toolbars) {
-			if (!elem.isVisible())
+	private boolean interpolate(List<? extends IGLLayoutElement> children, int deltaTimeMs) {
+		// reach the target when the next simulation step is expected to be finished
+		final float alpha = Math.min(1, deltaTimeMs / (float) Math.max(deltaTimeMs, stepDurationMs));
+		boolean moving = false;
+		for (int c = 0; c < children.size(); ++c) {
+			final IGLLayoutElement child = children.get(c);
+			final GLElement g = child.asElement();
+			final int i = front.indexOf(g, c);
+			if (i < 0 || !front.valid[i] || !g.getVisibility().doRender())
+				continue;
+			final float x = front.x[i];
+			final float y = front.y[i];
+			if (front.placed[i]) { // jump to new places
+				front.placed[i] = false;
+				child.setLocation(x, y);
 				continue;
-			ForcedBody body = new ForcedBody(GLElementAccessor.asLayoutElement(elem), ForcedBody.FLAG_TOOLBAR);
-			if (body.isInvalid()) // no position yet, skip it
+			}
+			if (isFixed(g)) // controlled by the user
 				continue;
-			b.add(body);
+			Vec2f loc = child.getLocation();
+			final float dx = x - loc.x();
+			final float dy = y - loc.y();
+			if (Float.isNaN(dx) || Float.isNaN(dy) || dx * dx + dy * dy < 0.25f) {
+				child.setLocation(x, y);
+			} else {
+				child.setLocation(loc.x() + dx * alpha, loc.y() + dy * alpha);
+				moving = true;
+			}
 		}
-		return b;
+		return moving;
+	}
+
+	private boolean isFixed(GLElement g) {
+		return parent.getFocussedElement() == g || parent.getDraggedElement() == g || parent.getHoveredElement() == g;
 	}
 
 	/**
-	 * @param children
-	 * @return
+	 * takes a snapshot of the current state and starts a simulation step in the background
 	 */
-	private List<ForcedBody> toForcedBodies(List<? extends IGLLayoutElement> children) {
-		List<ForcedBody> b =new ArrayList<>(children.size());
-		for(IGLLayoutElement elem : children) {
-			b.add(toForcedBody(elem));
+	private void schedule(List<? extends IGLLayoutElement> children, final float w, final float h) {
+		fillBodies(children, parent.getToolbars());
+		final boolean initial = !isInitLayoutDone;
+		isInitLayoutDone = true;
+		final Positions target = back;
+
+		runningStart = System.nanoTime();
+		running = ForkJoinPools.get().submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return simulate(initial, w, h, target);
+			}
+		});
+	}
+
+	/**
+	 * a single simulation step, called in the background
+	 *
+	 * @return whether another round is needed
+	 */
+	private boolean simulate(boolean initial, float w, float h, Positions target) {
+		final boolean anotherRound = step(bodies, scheduler, initial, w, h);
+		target.clear();
+		for (int i = 0; i < bodies.size(); ++i) // one entry per body, such that the index is the one of the child
+			target.put(bodies.elems[i].asElement(), (float) (bodies.centerX[i] - bodies.elemWidth[i] * 0.5),
+					(float) (bodies.centerY[i] - bodies.elemHeight[i] * 0.5), bodies.isPlaced(i),
+					bodies.isVisible(i) && !bodies.isInvalid(i));
+		return anotherRound;
+	}
+
+	/**
+	 * a single simulation step on the given bodies: places the uninitialized bodies, runs the iterations and damps the
+	 * movement
+	 *
+	 * @return whether another round is needed
+	 */
+	final boolean step(ForcedBodies bodies, IterationScheduler scheduler, boolean initial, float w, float h) {
+		final int size = bodies.size();
+		int movable = 0;
+		for (int i = 0; i < size; ++i)
+			if (bodies.isVisible(i) && !bodies.isFixed(i))
+				movable++;
+		scheduler.begin(initial, movable);
+		if (initial) {
+			initialLayout(bodies, w, h);
+			// System.out.println("init all");
+		} else {
+			initialPositions(bodies, w, h);
+		}
+
+		forcedBasedLayout(bodies, scheduler, w, h);
+		final boolean stable = !scheduler.end();
+		final double damping = scheduler.getDamping();
+
+		double totalDistanceSquared = 0;
+		for (int i = 0; i < size; ++i)
+			totalDistanceSquared += bodies.dampen(i, damping);
+		return !stable && totalDistanceSquared > 5 * 5;
+	}
+
+	/**
+	 * places all uninitialized visible bodies
+	 */
+	protected void initialPositions(ForcedBodies bodies, float w, float h) {
+		for (int i = 0; i < bodies.size(); ++i) {
+			if (bodies.isInvalid(i) && bodies.isVisible(i)) {
+				// System.out.println("init " + body);
+				initialPosition(bodies, i, w, h);
+			}
 		}
-		return b;
 	}
 
-	private ForcedBody toForcedBody(IGLLayoutElement elem) {
+	/**
+	 * places the given uninitialized body
+	 *
+	 * @param bodies
+	 * @param i
+	 *            the index of the body to place
+	 * @param w
+	 * @param h
+	 */
+	protected abstract void initialPosition(ForcedBodies bodies, int i, float w, float h);
+
+	protected abstract void initialLayout(ForcedBodies bodies, float w, float h);
+
+	/**
+	 * runs up to {@link IterationScheduler#getIterations()} iterations and reports each one via
+	 * {@link IterationScheduler#iterationDone(double)}. The cluster bodies are at [0, {@link ForcedBodies#size()})
+	 * followed by the toolbars
+	 */
+	protected abstract void forcedBasedLayout(ForcedBodies bodies, IterationScheduler scheduler, float w, float h);
+
+	/**
+	 * fills the store with the current state of the children and toolbars
+	 */
+	private void fillBodies(List<? extends IGLLayoutElement> children, List<AToolBarElement> toolbars) {
+		final OverlapGraph graph = parent.getOverlapGraph();
+		final boolean dimBands = parent.isBandsEnabled(EDimension.DIMENSION);
+		final boolean recBands = parent.isBandsEnabled(EDimension.RECORD);
+		bodies.clear(graph, dimBands, recBands);
+		for (int c = 0; c < children.size(); ++c)
+			addBody(children.get(c), c);
+		bodies.updateNeighbors();
+		for (AToolBarElement elem : toolbars) {
+			if (!elem.isVisible())
+				continue;
+			bodies.addToolBar(GLElementAccessor.asLayoutElement(elem)); // no position yet, skipped
+		}
+	}
+
+	private void addBody(IGLLayoutElement elem, int hint) {
 		int flags = 0;
 		GLElement glelem = elem.asElement();
 		if (parent.getFocussedElement() == glelem)
@@ -133,7 +296,13 @@ public abstract class AForceBasedLayoutTuned extends AForceBasedLayout {
 			flags |= ForcedBody.FLAG_HOVERED;
 		if (!isInitLayoutDone)
 			flags |= ForcedBody.FLAG_INITIAL;
-		return new ForcedBody(elem, flags);
+		final int i = front.indexOf(glelem, hint);
+		// continue where we stopped
+		if (i >= 0 && front.valid[i] && (flags & (ForcedBody.FLAG_DRAGGED | ForcedBody.FLAG_HOVERED)) == 0) {
+			location.set(front.x[i], front.y[i]);
+			bodies.add(elem, flags, location);
+		} else
+			bodies.add(elem, flags, elem.getLocation());
 	}
 
 	protected static Vec2d getDistanceFromTopLeft(ForcedBody body, float w, float h) {
@@ -141,7 +310,184 @@ public abstract class AForceBasedLayoutTuned extends AForceBasedLayout {
 	}
 
 	protected static Vec2d getDistanceFromBottomRight(ForcedBody body, float w, float h) {
-		return new Vec2d(body.getCenterX() + body.radiusX - w, body.getCenterY() + body.radiusY - h);
+		return new Vec2d(body.getCenterX() + body.getRadiusX() - w, body.getCenterY() + body.getRadiusY() - h);
 	}
 
+	/**
+	 * the input of a simulation step: the area, the graph, the enabled bands, the focused, dragged and hovered
+	 * elements, the visible toolbars and the children with their size and visibility
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private final class SimulationInput {
+		private OverlapGraph graph;
+		private float w = Float.NaN, h = Float.NaN;
+		private boolean dimBands, recBands;
+		private GLElement focussed, hovered, dragged;
+		private float draggedX, draggedY;
+
+		private int toolbars = 0;
+		private GLElement[] toolbarElems = new GLElement[4];
+		private float[] toolbarX = new float[4];
+		private float[] toolbarY = new float[4];
+
+		private int size = 0;
+		private GLElement[] elems = new GLElement[16];
+		private float[] widths = new float[16];
+		private float[] heights = new float[16];
+		private boolean[] visible = new boolean[16];
+
+		/**
+		 * updates this input with the current state
+		 *
+		 * @return whether it changed since the last update
+		 */
+		boolean update(List<? extends IGLLayoutElement> children, float w, float h) {
+			boolean changed = false;
+			final OverlapGraph graph = parent.getOverlapGraph();
+			final boolean dimBands = parent.isBandsEnabled(EDimension.DIMENSION);
+			final boolean recBands = parent.isBandsEnabled(EDimension.RECORD);
+			if (graph != this.graph || w != this.w || h != this.h || dimBands != this.dimBands
+					|| recBands != this.recBands) {
+				changed = true;
+				this.graph = graph;
+				this.w = w;
+				this.h = h;
+				this.dimBands = dimBands;
+				this.recBands = recBands;
+			}
+			final GLElement focussed = parent.getFocussedElement();
+			final GLElement hovered = parent.getHoveredElement();
+			final GLElement dragged = parent.getDraggedElement();
+			// follow the dragged element
+			final float draggedX = dragged == null ? 0 : dragged.getLocation().x();
+			final float draggedY = dragged == null ? 0 : dragged.getLocation().y();
+			if (focussed != this.focussed || hovered != this.hovered || dragged != this.dragged
+					|| draggedX != this.draggedX || draggedY != this.draggedY) {
+				changed = true;
+				this.focussed = focussed;
+				this.hovered = hovered;
+				this.dragged = dragged;
+				this.draggedX = draggedX;
+				this.draggedY = draggedY;
+			}
+			changed = updateToolbars(parent.getToolbars()) || changed;
+			return updateChildren(children) || changed;
+		}
+
+		private boolean updateToolbars(List<AToolBarElement> all) {
+			boolean changed = false;
+			int n = 0;
+			for (AToolBarElement toolbar : all) {
+				if (!toolbar.isVisible())
+					continue;
+				if (n == toolbarElems.length) {
+					toolbarElems = Arrays.copyOf(toolbarElems, n * 2);
+					toolbarX = Arrays.copyOf(toolbarX, n * 2);
+					toolbarY = Arrays.copyOf(toolbarY, n * 2);
+				}
+				final Vec2f loc = toolbar.getAbsoluteLocation();
+				if (n >= toolbars || toolbarElems[n] != toolbar || toolbarX[n] != loc.x() || toolbarY[n] != loc.y()) {
+					changed = true;
+					toolbarElems[n] = toolbar;
+					toolbarX[n] = loc.x();
+					toolbarY[n] = loc.y();
+				}
+				n++;
+			}
+			if (n != toolbars) {
+				changed = true;
+				Arrays.fill(toolbarElems, n, toolbarElems.length, null);
+				toolbars = n;
+			}
+			return changed;
+		}
+
+		private boolean updateChildren(List<? extends IGLLayoutElement> children) {
+			final int n = children.size();
+			boolean changed = n != size;
+			if (n > elems.length) {
+				elems = Arrays.copyOf(elems, n);
+				widths = Arrays.copyOf(widths, n);
+				heights = Arrays.copyOf(heights, n);
+				visible = Arrays.copyOf(visible, n);
+			}
+			for (int c = 0; c < n; ++c) {
+				final IGLLayoutElement child = children.get(c);
+				final GLElement elem = child.asElement();
+				final boolean v = elem.getVisibility().doRender();
+				// the size of invisible children doesn't matter
+				final float width = v ? child.getWidth() : 0;
+				final float height = v ? child.getHeight() : 0;
+				if (c >= size || elems[c] != elem || visible[c] != v || widths[c] != width || heights[c] != height) {
+					changed = true;
+					elems[c] = elem;
+					visible[c] = v;
+					widths[c] = width;
+					heights[c] = height;
+				}
+			}
+			if (n < size)
+				Arrays.fill(elems, n, size, null);
+			size = n;
+			return changed;
+		}
+	}
+
+	/**
+	 * buffer of the target locations of the elements, one entry per body
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private static final class Positions {
+		private GLElement[] elems = new GLElement[16];
+		private float[] x = new float[16];
+		private float[] y = new float[16];
+		/**
+		 * whether the element was explicitly placed, i.e. should jump to the location
+		 */
+		private boolean[] placed = new boolean[16];
+		/**
+		 * whether the body was visible and placed, i.e. the location is valid
+		 */
+		private boolean[] valid = new boolean[16];
+		private int size = 0;
+
+		void clear() {
+			Arrays.fill(elems, 0, size, null);
+			size = 0;
+		}
+
+		void put(GLElement elem, float x, float y, boolean placed, boolean valid) {
+			final int i = size++;
+			if (i == this.x.length) {
+				this.elems = Arrays.copyOf(this.elems, i * 2);
+				this.x = Arrays.copyOf(this.x, i * 2);
+				this.y = Arrays.copyOf(this.y, i * 2);
+				this.placed = Arrays.copyOf(this.placed, i * 2);
+				this.valid = Arrays.copyOf(this.valid, i * 2);
+			}
+			this.elems[i] = elem;
+			this.x[i] = x;
+			this.y[i] = y;
+			this.placed[i] = placed;
+			this.valid[i] = valid;
+		}
+
+		/**
+		 * @param hint
+		 *            the expected index, i.e. the one of the child, as the children are usually in the same order
+		 * @return the index of the given element or -1 if none
+		 */
+		int indexOf(GLElement elem, int hint) {
+			if (hint < size && elems[hint] == elem)
+				return hint;
+			for (int i = 0; i < size; ++i)
+				if (elems[i] == elem)
+					return i;
+			return -1;
+		}
+	}
 }
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem.layout;
+
+import java.util.Arrays;
+
+/**
+ * quad tree over the centers of a set of {@link ForcedBody}s for approximating the repulsion between far away bodies
+ * (Barnes-Hut).
+ *
+ * the nodes are stored in parallel arrays, the bodies of a node are a continuous range in {@link #order}. The tree
+ * can be rebuilt using {@link #build(ForcedBodies, int[], int, double[])} without allocating new arrays
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class BarnesHutTree {
+	/**
+	 * max number of bodies in a leaf
+	 */
+	private static final int LEAF_SIZE = 4;
+	/**
+	 * max depth to avoid endless splitting of bodies at the same position
+	 */
+	private static final int MAX_DEPTH = 24;
+
+	private ForcedBodies bodies;
+	/**
+	 * body indices ordered, such that every node is a continuous range
+	 */
+	private int[] order = new int[0];
+	private int[] tmp = new int[0];
+	/**
+	 * counting sort buffers of a split
+	 */
+	private final int[] counts = new int[4];
+	private final int[] starts = new int[4];
+	private final int[] pos = new int[4];
+
+	private int nodes = 0;
+	private int[] firstChild = new int[16];
+	private int[] from = new int[16];
+	private int[] to = new int[16];
+	private double[] x0 = new double[16];
+	private double[] y0 = new double[16];
+	private double[] size = new double[16];
+	private double[] comX = new double[16];
+	private double[] comY = new double[16];
+	private double[] mass = new double[16];
+	private double[] radius = new double[16];
+
+	private final Cursor cursor = new Cursor();
+
+	/**
+	 * rebuilds the tree
+	 *
+	 * @param bodies
+	 *            all bodies
+	 * @param indices
+	 *            the indices of the bodies to insert
+	 * @param count
+	 *            number of valid entries in indices
+	 * @param weights
+	 *            the weight of every body, i.e. a factor for its repulsion
+	 */
+	public void build(ForcedBodies bodies, int[] indices, int count, double[] weights) {
+		this.bodies = bodies;
+		this.nodes = 0;
+		if (order.length < count) {
+			order = new int[count];
+			tmp = new int[count];
+		}
+		System.arraycopy(indices, 0, order, 0, count);
+		if (count == 0)
+			return;
+		final double[] centerX = bodies.centerX;
+		final double[] centerY = bodies.centerY;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; ++i) {
+			final int b = order[i];
+			minX = Math.min(minX, centerX[b]);
+			minY = Math.min(minY, centerY[b]);
+			maxX = Math.max(maxX, centerX[b]);
+			maxY = Math.max(maxY, centerY[b]);
+		}
+		final double s = Math.max(Math.max(maxX - minX, maxY - minY), 1) * 1.0001;
+		build(newNode(0, count, minX, minY, s), 0, weights);
+	}
+
+	private int newNode(int from, int to, double x0, double y0, double size) {
+		if (nodes == firstChild.length) {
+			final int l = nodes * 2;
+			firstChild = Arrays.copyOf(firstChild, l);
+			this.from = Arrays.copyOf(this.from, l);
+			this.to = Arrays.copyOf(this.to, l);
+			this.x0 = Arrays.copyOf(this.x0, l);
+			this.y0 = Arrays.copyOf(this.y0, l);
+			this.size = Arrays.copyOf(this.size, l);
+			comX = Arrays.copyOf(comX, l);
+			comY = Arrays.copyOf(comY, l);
+			mass = Arrays.copyOf(mass, l);
+			radius = Arrays.copyOf(radius, l);
+		}
+		final int n = nodes++;
+		firstChild[n] = -1;
+		this.from[n] = from;
+		this.to[n] = to;
+		this.x0[n] = x0;
+		this.y0[n] = y0;
+		this.size[n] = size;
+		return n;
+	}
+
+	private void build(int node, int depth, double[] weights) {
+		final int f = from[node];
+		final int t = to[node];
+
+		// aggregate
+		double m = 0, cx = 0, cy = 0, r = 0;
+		for (int i = f; i < t; ++i) {
+			final int b = order[i];
+			final double w = weights[b];
+			m += w;
+			cx += bodies.centerX[b] * w;
+			cy += bodies.centerY[b] * w;
+			r += radius(bodies, b);
+		}
+		mass[node] = m;
+		comX[node] = m > 0 ? cx / m : 0;
+		comY[node] = m > 0 ? cy / m : 0;
+		radius[node] = r / (t - f);
+
+		if (t - f <= LEAF_SIZE || depth >= MAX_DEPTH)
+			return;
+
+		// split into 4 quadrants by a counting sort of the range
+		final double half = size[node] * 0.5;
+		final double mx = x0[node] + half;
+		final double my = y0[node] + half;
+		Arrays.fill(counts, 0);
+		for (int i = f; i < t; ++i)
+			counts[quadrant(order[i], mx, my)]++;
+		starts[0] = 0;
+		for (int q = 1; q < 4; ++q)
+			starts[q] = starts[q - 1] + counts[q - 1];
+		System.arraycopy(starts, 0, pos, 0, 4);
+		for (int i = f; i < t; ++i)
+			tmp[f + pos[quadrant(order[i], mx, my)]++] = order[i];
+		System.arraycopy(tmp, f, order, f, t - f);
+
+		final int first = nodes;
+		for (int q = 0; q < 4; ++q)
+			newNode(f + starts[q], f + starts[q] + counts[q], (q & 1) == 0 ? x0[node] : mx, (q & 2) == 0 ? y0[node]
+					: my, half);
+		firstChild[node] = first;
+		// the split buffers are reused by the children, so just use the created nodes from here
+		for (int q = 0; q < 4; ++q)
+			if (to[first + q] > from[first + q])
+				build(first + q, depth + 1, weights);
+	}
+
+	private int quadrant(int b, double mx, double my) {
+		return (bodies.centerX[b] < mx ? 0 : 1) | (bodies.centerY[b] < my ? 0 : 2);
+	}
+
+	/**
+	 * @return the mean radius of the enclosing ellipse of a body
+	 */
+	static double radius(ForcedBodies bodies, int b) {
+		return (bodies.radiusX[b] + bodies.radiusY[b]) * 0.5 * Math.sqrt(2);
+	}
+
+	/**
+	 * visits all nodes relevant for the given body: far away nodes, i.e. cell size / distance < theta, are reported
+	 * as aggregates, near ones body by body
+	 *
+	 * @param self
+	 *            the index of the body to exclude
+	 * @param theta
+	 * @param visitor
+	 */
+	public void visit(int self, double theta, IVisitor visitor) {
+		visit(self, theta, visitor, cursor);
+	}
+
+	/**
+	 * same as {@link #visit(int, double, IVisitor)} using the given traversal state, such that multiple threads can
+	 * visit the tree at the same time
+	 */
+	public void visit(int self, double theta, IVisitor visitor, Cursor cursor) {
+		int[] stack = cursor.stack;
+		if (nodes == 0)
+			return;
+		final double bx = bodies.centerX[self];
+		final double by = bodies.centerY[self];
+		final double theta2 = theta * theta;
+
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			final int node = stack[--top];
+			if (firstChild[node] < 0) { // leaf: exact
+				for (int i = from[node]; i < to[node]; ++i)
+					if (order[i] != self)
+						visitor.exact(order[i]);
+				continue;
+			}
+			final double dx = bx - comX[node];
+			final double dy = by - comY[node];
+			final double d2 = dx * dx + dy * dy;
+			final double s = size[node];
+			if (!contains(node, bx, by) && s * s < theta2 * d2) {
+				visitor.approximate(comX[node], comY[node], to[node] - from[node], mass[node], radius[node]);
+				continue;
+			}
+			if (top + 4 > stack.length)
+				stack = cursor.stack = Arrays.copyOf(stack, stack.length * 2);
+			final int first = firstChild[node];
+			for (int q = 0; q < 4; ++q)
+				if (to[first + q] > from[first + q])
+					stack[top++] = first + q;
+		}
+	}
+
+	private boolean contains(int node, double x, double y) {
+		final double s = size[node];
+		return x >= x0[node] && x < x0[node] + s && y >= y0[node] && y < y0[node] + s;
+	}
+
+	/**
+	 * the traversal state of a visit
+	 */
+	static final class Cursor {
+		private int[] stack = new int[64];
+	}
+
+	interface IVisitor {
+		/**
+		 * a near body
+		 *
+		 * @param other
+		 *            the index of the body
+		 */
+		void exact(int other);
+
+		/**
+		 * an aggregate of far away bodies
+		 *
+		 * @param x
+		 *            center of mass
+		 * @param y
+		 *            center of mass
+		 * @param count
+		 *            number of bodies
+		 * @param mass
+		 *            sum of the weights
+		 * @param radius
+		 *            mean radius
+		 */
+		void approximate(double x, double y, int count, double mass, double radius);
+	}
+}
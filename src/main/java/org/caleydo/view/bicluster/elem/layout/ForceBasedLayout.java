@@ -19,6 +19,7 @@ import org.caleydo.view.bicluster.elem.AllClustersElement;
 import org.caleydo.view.bicluster.elem.ClusterElement;
 import org.caleydo.view.bicluster.elem.toolbar.AToolBarElement;
 import org.caleydo.view.bicluster.physics.Physics;
+import org.caleydo.view.bicluster.util.UniformGrid;
 import org.caleydo.view.bicluster.util.Vec2d;
 
 /**
@@ -34,6 +35,11 @@ public class ForceBasedLayout extends AForceBasedLayout {
 	protected float attractionFactor = 100f;
 	protected float borderForceFactor = 200f;
 
+	/**
+	 * spatial index of the clusters and toolbars for finding collisions
+	 */
+	private final UniformGrid grid = new UniformGrid(100);
+
 	public ForceBasedLayout(AllClustersElement parent) {
 		super(parent);
 	}
@@ -91,44 +97,99 @@ public class ForceBasedLayout extends AForceBasedLayout {
 	private void bringClustersBackToFrame(List<? extends IGLLayoutElement> children, float w, float h) {
 		for (IGLLayoutElement i : children) {
 			Vec4f bounds = i.getBounds();
-			Rectangle2D frame = new Rectangle2D.Float(0, 0, (int) w, (int) h);
-			if (!frame.intersects(bounds.x(), bounds.y(), bounds.z(), bounds.w()))
-				i.setLocation((float) (Math.random() * w), (float) (Math.random() * h));
+			if (!intersects(0, 0, (int) w, (int) h, bounds.x(), bounds.y(), bounds.z(), bounds.w()))
+				i.setLocation((float) (random.nextDouble() * w), (float) (random.nextDouble() * h));
 		}
 	}
 
 	private void clearClusterCollisions(List<? extends IGLLayoutElement> children, float w, float h) {
-		for (IGLLayoutElement iIGL : children) {
+		final int n = children.size();
+		final List<AToolBarElement> toolbars = parent.getToolbars();
+		updateGrid(children, toolbars);
+		for (int iIndex = 0; iIndex < n; ++iIndex) {
+			IGLLayoutElement iIGL = children.get(iIndex);
 			ClusterElement i = (ClusterElement) iIGL.asElement();
 			if (!i.isVisible())
 				continue;
 			Vec2f iSize = iIGL.getSetSize();
 			Vec2f iLoc = iIGL.getLocation();
-			Rectangle2D iRec = new Rectangle2D.Float(iLoc.x() - 10, iLoc.y() - 10, iSize.x() + 20, iSize.y() + 20);
-			for (IGLLayoutElement jIGL : children) {
-				ClusterElement j = (ClusterElement) jIGL.asElement();
-				if (j == i || !j.isVisible() || (j == parent.getDraggedElement() || j == parent.getFocussedElement()))
+			// candidates, the hits stay valid till the next query
+			final int hits = grid.query(iLoc.x() - 10, iLoc.y() - 10, iSize.x() + 20, iSize.y() + 20);
+			for (int k = 0; k < hits; ++k) {
+				final int jIndex = grid.getHit(k);
+				if (jIndex >= n) // toolbar
+					continue;
+				ClusterElement j = (ClusterElement) children.get(jIndex).asElement();
+				if (j == i || (j == parent.getDraggedElement() || j == parent.getFocussedElement()))
 					continue;
 
 				Vec2f jSize = j.getSize();
 				Vec2f jLoc = j.getLocation();
-				Rectangle2D jRec = new Rectangle2D.Float(jLoc.x() - 10, jLoc.y() - 10, jSize.x() + 20, jSize.y() + 20);
-				if (iRec.intersects(jRec)) {
+				if (intersects(iLoc.x() - 10, iLoc.y() - 10, iSize.x() + 20, iSize.y() + 20, jLoc.x() - 10,
+						jLoc.y() - 10, jSize.x() + 20, jSize.y() + 20)) {
 					setLocation(j, (jLoc.x() + 200) % w, (jLoc.y() + 200) % h, w, h);
+					updateGrid(jIndex, j);
 				}
 			}
-			for (AToolBarElement toolbar : parent.getToolbars()) {
-				if (!toolbar.isVisible()) // no parent not visible
+			for (int k = 0; k < hits; ++k) {
+				final int t = grid.getHit(k) - n;
+				if (t < 0)
 					continue;
+				AToolBarElement toolbar = toolbars.get(t);
 				Vec2f toolsLoc = toolbar.getAbsoluteLocation();
 				Vec2f toolsSiz = toolbar.getSize();
-				Rectangle2D toolRec = new Rectangle2D.Float(toolsLoc.x(), toolsLoc.y(), toolsSiz.x(), toolsSiz.y());
-				if (toolRec.intersects(iRec)) {
+				if (intersects(toolsLoc.x(), toolsLoc.y(), toolsSiz.x(), toolsSiz.y(), iLoc.x() - 10, iLoc.y() - 10,
+						iSize.x() + 20, iSize.y() + 20)) {
 					setLocation(i, (iLoc.x() - 200) % w, (iLoc.y() - 200) % h, w, h);
 				}
 			}
+			updateGrid(iIndex, i);
+		}
+
+	}
+
+	/**
+	 * updates the grid with the visible clusters including a margin of 10 pixel followed by the visible toolbars
+	 */
+	private void updateGrid(List<? extends IGLLayoutElement> children, List<AToolBarElement> toolbars) {
+		final int n = children.size();
+		float sum = 0;
+		for (IGLLayoutElement child : children)
+			sum += child.getWidth() + child.getHeight();
+		if (n > 0)
+			grid.ensureCellSize(sum / (2 * n) + 20);
+		for (int i = 0; i < n; ++i)
+			updateGrid(i, (ClusterElement) children.get(i).asElement());
+		for (int t = 0; t < toolbars.size(); ++t) {
+			AToolBarElement toolbar = toolbars.get(t);
+			if (!toolbar.isVisible()) { // no parent not visible
+				grid.remove(n + t);
+				continue;
+			}
+			Vec2f toolsLoc = toolbar.getAbsoluteLocation();
+			Vec2f toolsSiz = toolbar.getSize();
+			grid.update(n + t, toolsLoc.x(), toolsLoc.y(), toolsSiz.x(), toolsSiz.y());
+		}
+		grid.truncate(n + toolbars.size());
+	}
+
+	private void updateGrid(int index, ClusterElement elem) {
+		if (!elem.isVisible()) {
+			grid.remove(index);
+			return;
 		}
+		Vec2f size = elem.getSize();
+		Vec2f loc = elem.getLocation();
+		grid.update(index, loc.x() - 10, loc.y() - 10, size.x() + 20, size.y() + 20);
+	}
 
+	/**
+	 * allocation free version of {@link Rectangle2D#intersects(Rectangle2D)}
+	 */
+	private static boolean intersects(float x0, float y0, float w0, float h0, float x, float y, float w, float h) {
+		if (w0 <= 0 || h0 <= 0 || w <= 0 || h <= 0)
+			return false;
+		return x + w > x0 && y + h > y0 && x < x0 + w0 && y < y0 + h0;
 	}
 
 	private void scaleView(List<? extends IGLLayoutElement> children, float w, float h) {
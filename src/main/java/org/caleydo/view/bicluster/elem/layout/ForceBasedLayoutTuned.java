@@ -5,11 +5,11 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem.layout;
 
-import java.awt.geom.Rectangle2D;
 import java.util.List;
+import java.util.Random;
 
 import org.caleydo.view.bicluster.elem.AllClustersElement;
-import org.caleydo.view.bicluster.elem.ClusterElement;
+import org.caleydo.view.bicluster.util.UniformGrid;
 import org.caleydo.view.bicluster.util.Vec2d;
 
 /**
@@ -24,6 +24,8 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 	protected float attractionFactor = 100f;
 	protected float borderForceFactor = 200f;
 
+	private final UniformGrid grid = new UniformGrid(100);
+
 	public ForceBasedLayoutTuned(AllClustersElement parent) {
 		super(parent);
 	}
@@ -53,10 +55,11 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 	}
 
 	@Override
-	public void forcedBasedLayout(List<ForcedBody> bodies, List<ForcedBody> toolBars, final int iterations, float w,
-			float h) {
+	public void forcedBasedLayout(ForcedBodies store, IterationScheduler scheduler, float w, float h) {
+		final List<ForcedBody> bodies = store.bodies();
+		final List<ForcedBody> toolBars = store.toolBars();
 		bringClustersBackToFrame(bodies, w, h);
-		clearClusterCollisions(bodies, toolBars, w, h);
+		clearClusterCollisions(store, bodies, w, h);
 
 		// calculate the attraction based on the size of all overlaps
 		int xOverlapSize = 0, yOverlapSize = 0;
@@ -64,9 +67,8 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 			if (body.isFocussed()) {
 				body.setLocation(w * 0.5f, h * 0.5f);
 			}
-			ClusterElement v = body.asClusterElement();
-			xOverlapSize += v.getDimTotalOverlaps();
-			yOverlapSize += v.getRecTotalOverlaps();
+			xOverlapSize += body.getDimTotalOverlaps();
+			yOverlapSize += body.getRecTotalOverlaps();
 		}
 		final double attraction = attractionFactor / (xOverlapSize + yOverlapSize);
 
@@ -74,34 +76,43 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 		xOverlapSize *= 2;
 		yOverlapSize /= 3;
 
+		final int iterations = scheduler.getIterations();
 		for (int i = 0; i < iterations; i++) {
 			double frameFactor = 1;
-			forceDirectedLayout(bodies, toolBars, w, h, frameFactor, attraction, xOverlapSize);
+			double energy = forceDirectedLayout(bodies, toolBars, w, h, frameFactor, attraction, xOverlapSize);
+			if (!scheduler.iterationDone(energy))
+				break;
 		}
 	}
 
 	private void bringClustersBackToFrame(List<ForcedBody> bodies, float w, float h) {
-		Rectangle2D frame = new Rectangle2D.Float(0, 0, w, h);
 		for (ForcedBody body : bodies) {
-			if (!frame.intersects(body))
-				body.setLocation(Math.random() * w, Math.random() * h);
+			if (!body.intersects(0, 0, w, h))
+				body.setLocation(random.nextDouble() * w, random.nextDouble() * h);
 		}
 	}
 
-	private void clearClusterCollisions(List<ForcedBody> bodies, List<ForcedBody> toolBars, float w, float h) {
+	private void clearClusterCollisions(ForcedBodies store, List<ForcedBody> bodies, float w, float h) {
+		store.updateGrid(grid);
 		for (ForcedBody body : bodies) {
 			if (!body.isVisible())
 				continue;
-			for (ForcedBody other : bodies) {
-				if (body == other || !other.isVisible() || other.isDraggedOrFocussed())
+			// candidates, the hits stay valid till the next query
+			final int hits = grid.query(body.x0(), body.y0(), body.getWidth(), body.getHeight());
+			for (int k = 0; k < hits; ++k) {
+				final ForcedBody other = store.get(grid.getHit(k));
+				if (body == other || other.isDraggedOrFocussed())
 					continue;
 				if (body.intersects(other)) {
 					other.setLocation((other.getCenterX() + 200) % w, (other.getCenterY() + 200) % h);
+					store.updateGrid(grid, other.getIndex());
 				}
 			}
-			for (ForcedBody toolbar : toolBars) {
-				if (body.intersects(toolbar)) {
+			for (int k = 0; k < hits; ++k) {
+				final ForcedBody toolbar = store.get(grid.getHit(k));
+				if (toolbar.isToolBar() && body.intersects(toolbar)) {
 					body.setLocation((body.getCenterX() - 200) % w, (body.getCenterY() - 200) % h);
+					store.updateGrid(grid, body.getIndex());
 				}
 			}
 		}
@@ -113,8 +124,9 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 	 * @param w
 	 * @param h
 	 * @param attraction
+	 * @return the sum of the squared displacements
 	 */
-	private void forceDirectedLayout(List<ForcedBody> bodies, List<ForcedBody> fixedBodies, float w, float h,
+	private double forceDirectedLayout(List<ForcedBody> bodies, List<ForcedBody> fixedBodies, float w, float h,
 			double frameFactor, double attraction, int xOverlapSize) {
 
 		final int size = bodies.size();
@@ -130,23 +142,23 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 					continue;
 				// squared distance between "u" and "v" in 2D space
 				// calculate the repulsion between two vertices
-				final Vec2d distVec = body.distanceTo(other);
+				final Vec2d distVec = body.distanceTo(other, random);
 				final double distLength = distVec.length();
 				addRepulsion(body, other, distVec, distLength);
 				addAttraction(body, other, distVec, distLength);
 			}
 			if (!body.isFixed()) { // don't waste time if the element is active
 				addFrame(w, h, body);
-				addFixedBodyRespulsion(fixedBodies, body);
+				addFixedBodyRespulsion(fixedBodies, body, random);
 			}
 		}
 
-		applyForce(bodies, frameFactor, attraction, xOverlapSize);
-
+		return applyForce(bodies, frameFactor, attraction, xOverlapSize);
 	}
 
-	private void applyForce(List<ForcedBody> bodies, double frameFactor, double attraction, int xOverlapSize) {
+	private double applyForce(List<ForcedBody> bodies, double frameFactor, double attraction, int xOverlapSize) {
 		// count forces together + apply + reset
+		double energy = 0;
 		for (ForcedBody body : bodies) { // reset forces
 			if (!body.isVisible() || body.isFixed()) {
 				body.resetForce();
@@ -177,12 +189,14 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 			// System.out.println("  Sum: " + forceX + " " + forceY);
 			body.move(forceX, forceY);
 			body.resetForce();
+			energy += forceX * forceX + forceY * forceY;
 		}
+		return energy;
 	}
 
-	private static void addFixedBodyRespulsion(List<ForcedBody> toolBars, final ForcedBody body) {
+	private static void addFixedBodyRespulsion(List<ForcedBody> toolBars, final ForcedBody body, Random random) {
 		for (ForcedBody toolbar : toolBars) {
-			final Vec2d distVec = body.distanceTo(toolbar);
+			final Vec2d distVec = body.distanceTo(toolbar, random);
 			final double distLength = distVec.length();
 			double rsq = distLength * distLength * distLength;
 			double xForce = 1.5f * distVec.x() / rsq;
@@ -233,7 +247,8 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 	}
 
 	@Override
-	protected void initialLayout(List<ForcedBody> bodies, float w, float h) {
+	protected void initialLayout(ForcedBodies store, float w, float h) {
+		final List<ForcedBody> bodies = store.bodies();
 		final int rowCount = (int) (Math.sqrt(bodies.size())) + 1;
 		int i = 0;
 
@@ -248,8 +263,9 @@ public class ForceBasedLayoutTuned extends AForceBasedLayoutTuned {
 	}
 
 	@Override
-	protected void initialPosition(ForcedBody body, float w, float h, List<ForcedBody> bodies) {
-		body.setLocation(Math.random() * w - 2 * body.radiusX + body.radiusX, Math.random() * h - 2 * body.radiusY
-				+ body.radiusY);
+	protected void initialPosition(ForcedBodies bodies, int i, float w, float h) {
+		ForcedBody body = bodies.get(i);
+		body.setLocation(random.nextDouble() * w - 2 * body.getRadiusX() + body.getRadiusX(), random.nextDouble() * h
+				- 2 * body.getRadiusY() + body.getRadiusY());
 	}
 }
@@ -5,13 +5,12 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem.layout;
 
-import java.util.List;
-import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 
 import org.caleydo.view.bicluster.elem.AllClustersElement;
-import org.caleydo.view.bicluster.elem.ClusterElement;
-import org.caleydo.view.bicluster.physics.Physics.Distance;
-import org.caleydo.view.bicluster.util.Vec2d;
+import org.caleydo.view.bicluster.internal.ForkJoinPools;
+import org.caleydo.view.bicluster.physics.Physics;
+import org.caleydo.view.bicluster.util.UniformGrid;
 
 /**
  * tuned version of {@link ForceBasedLayout}
@@ -20,16 +19,68 @@ import org.caleydo.view.bicluster.util.Vec2d;
  *
  */
 public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
-	private final Random r = new Random();
 
 	private final static double connectorOffset = 20; // [px]
 	private final static double initialDistanceFactor = 1.2;
 	private final static double minimumDistanceFactor = 0.25;
+	/**
+	 * min number of bodies for using the Barnes-Hut approximation, below the exact version is faster
+	 */
+	private final static int barnesHutMinBodies = 64;
+	/**
+	 * min number of bodies for computing the forces in parallel
+	 */
+	private final static int parallelMinBodies = 128;
+	/**
+	 * number of bodies handled by a single parallel task
+	 */
+	private final static int parallelGrainSize = 32;
+	/**
+	 * number of random positions to try for finding a free one
+	 */
+	private final static int maxPlacementTries = 8;
+	/**
+	 * which side of a pair a force is applied to
+	 */
+	private final static int SIDE_BODY = 1;
+	private final static int SIDE_OTHER = 2;
+	private final static int SIDE_BOTH = SIDE_BODY | SIDE_OTHER;
 
 	private double centerForce = 0.002;
 	private double repulsionFactor = 70;
 	private double attractionFactor = 0.20;
 	private double frameFactor = 2;
+	/**
+	 * Barnes-Hut approximation parameter, 0 = exact repulsion
+	 */
+	private double theta = 0.8;
+
+	/**
+	 * reused buffers of the simulation, which runs in a single thread at a time
+	 */
+	private final double[] dist = new double[Physics.DISTANCE_SIZE];
+	private int[] fixed = new int[0];
+	private int[] indices = new int[0];
+	private double[] weights = new double[0];
+	private final BarnesHutTree tree = new BarnesHutTree();
+	private final RepulsionVisitor visitor = new RepulsionVisitor();
+	/**
+	 * per thread buffers of the parallel mode
+	 */
+	private final ThreadLocal<RepulsionVisitor> visitors = new ThreadLocal<RepulsionVisitor>() {
+		@Override
+		protected RepulsionVisitor initialValue() {
+			return new RepulsionVisitor();
+		}
+	};
+	/**
+	 * initial positions based on the overlaps
+	 */
+	private final MDSLayout mds = new MDSLayout();
+	/**
+	 * spatial index of the placed bodies for finding free initial positions
+	 */
+	private final UniformGrid grid = new UniformGrid(100);
 
 	public ForceBasedLayoutTuned2(AllClustersElement parent) {
 		super(parent);
@@ -53,6 +104,7 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		elem.addSlider("attraction", "Attraction between clusters", (float) attractionFactor, 0.01f, 0.4f);
 		elem.addSlider("frame", "Force from the window border", (float) frameFactor, 0.5f, 4f);
 		elem.addSlider("center", "Force towards the center", (float) centerForce * 100, 0, 1f);
+		elem.addSlider("theta", "Repulsion approximation (0 = exact)", (float) theta, 0, 1.5f);
 	}
 
 	@Override
@@ -70,6 +122,9 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		case "center":
 			centerForce = value * 0.01f;
 			break;
+		case "theta":
+			theta = value;
+			break;
 		default:
 			break;
 		}
@@ -77,73 +132,308 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 	}
 
 	@Override
-	public void forcedBasedLayout(List<ForcedBody> bodies, List<ForcedBody> fixed, final int iterations, float w,
-			float h) {
+	public void forcedBasedLayout(ForcedBodies bodies, IterationScheduler scheduler, float w, float h) {
+		final int size = bodies.size();
+		final int total = bodies.total();
 
 		// calculate the attraction based on the size of all overlaps
 		int dimOverlapSize = 0, recOverlapSize = 0;
 		double areaFilled = 0;
-		for (ForcedBody fix : fixed) {
-			areaFilled += fix.getArea();
+		if (fixed.length < total)
+			fixed = new int[total];
+		int fixedCount = 0;
+		for (int i = size; i < total; ++i) {
+			areaFilled += bodies.getArea(i);
+			fixed[fixedCount++] = i;
 		}
 		boolean anyFocussed = false;
-		for (ForcedBody body : bodies) {
-			if (body.isFocussed()) {
-				body.setLocation(w * 0.5f, h * 0.5f);
+		for (int i = 0; i < size; ++i) {
+			if (bodies.isFocussed(i)) {
+				bodies.setLocation(i, w * 0.5f, h * 0.5f);
 				anyFocussed = true;
 			}
-			ClusterElement v = body.asClusterElement();
-			dimOverlapSize += v.getDimTotalOverlaps();
-			recOverlapSize += v.getRecTotalOverlaps();
+			dimOverlapSize += bodies.dimTotalOverlaps[i];
+			recOverlapSize += bodies.recTotalOverlaps[i];
 
-			areaFilled += body.getArea();
-			if (body.isFixed())
-				fixed.add(body); // handle fixed bodies as fixed objects
+			areaFilled += bodies.getArea(i);
+			if (bodies.isFixed(i))
+				fixed[fixedCount++] = i; // handle fixed bodies as fixed objects
 		}
 
 		areaFilled /= (w * h);
 
+		final int iterations = scheduler.getIterations();
 		for (int i = 0; i < iterations; i++) {
 			double frameAlpha = (i + 1) / (double) iterations;
-			forceDirectedLayout(bodies, fixed, w, h, frameAlpha, dimOverlapSize, recOverlapSize, areaFilled,
+			double energy = forceDirectedLayout(bodies, fixedCount, w, h, frameAlpha, dimOverlapSize, recOverlapSize,
+					areaFilled, anyFocussed);
+			if (!scheduler.iterationDone(energy))
+				break;
+		}
+	}
+
+	/**
+	 * @return the sum of the squared displacements
+	 */
+	private double forceDirectedLayout(ForcedBodies bodies, int fixedCount, float w, float h, double frameAlpha,
+			int overlapDim, int overlapRec, double areaFilled, boolean anyFocussed) {
+
+		final int size = bodies.size();
+		final boolean approximate = theta > 0 && size >= barnesHutMinBodies;
+
+		if (size >= parallelMinBodies && ForkJoinPools.get().getParallelism() > 1) {
+			forceDirectedLayoutParallel(bodies, approximate, fixedCount, w, h, frameAlpha, overlapDim, overlapRec,
 					anyFocussed);
+			return applyForce(bodies, frameAlpha, overlapDim, overlapRec, areaFilled);
+		}
+
+		// repulsion
+		if (approximate)
+			addApproximatedRepulsion(bodies);
+		else
+			addRepulsion(bodies, dist);
+
+		for (int i = 0; i < size; ++i) { // Loop through Vertices
+			if (!bodies.isVisible(i))
+				continue;
+			// attraction just between overlapping neighbors
+			for (int k = bodies.neighborsStart(i); k < bodies.neighborsEnd(i); ++k) {
+				final int j = bodies.neighbor(k);
+				if (!bodies.isVisible(j))
+					continue;
+				distance(bodies, i, j, dist);
+				addAttraction(bodies, i, j, dist, overlapDim, overlapRec, SIDE_BOTH);
+			}
+			if (!bodies.isFixed(i)) { // don't waste time if the element is active
+				addFrame(w, h, bodies, i, frameAlpha);
+				addGravity(w, h, bodies, i, anyFocussed);
+				addFixedBodyRespulsion(bodies, fixed, fixedCount, i, dist, true);
+			}
 		}
+
+		return applyForce(bodies, frameAlpha, overlapDim, overlapRec, areaFilled);
 	}
 
-	private void forceDirectedLayout(List<ForcedBody> bodies, List<ForcedBody> fixedBodies, float w, float h,
-			double frameAlpha, int overlapDim, int overlapRec, double areaFilled, boolean anyFocussed) {
+	/**
+	 * parallel version of the force computation: every task just writes the forces of its own range of bodies. Pairs
+	 * are evaluated from both sides, in the same order and direction as the serial version, such that the result is
+	 * the same
+	 */
+	private void forceDirectedLayoutParallel(final ForcedBodies bodies, final boolean approximate,
+			final int fixedCount, final float w, final float h, final double frameAlpha, final int overlapDim,
+			final int overlapRec, final boolean anyFocussed) {
+		final int size = bodies.size();
+		if (approximate) {
+			final int count = prepareApproximatedRepulsion(bodies);
+			ForkJoinPools.get().invoke(new ForceTask(0, count) {
+				@Override
+				protected void compute(int from, int to) {
+					final RepulsionVisitor v = visitors.get();
+					v.bodies = bodies;
+					for (int k = from; k < to; ++k) {
+						v.body = indices[k];
+						tree.visit(v.body, theta, v, v.cursor);
+					}
+				}
+			});
+		} else {
+			ForkJoinPools.get().invoke(new ForceTask(0, size) {
+				@Override
+				protected void compute(int from, int to) {
+					final double[] dist = visitors.get().dist;
+					for (int i = from; i < to; ++i)
+						addRepulsionRow(bodies, i, dist);
+				}
+			});
+		}
+		ForkJoinPools.get().invoke(new ForceTask(0, size) {
+			@Override
+			protected void compute(int from, int to) {
+				final double[] dist = visitors.get().dist;
+				for (int i = from; i < to; ++i) {
+					if (!bodies.isVisible(i))
+						continue;
+					// attraction as the other side of the smaller neighbors
+					for (int k = bodies.reverseStart(i); k < bodies.reverseEnd(i); ++k) {
+						final int j = bodies.reverse(k);
+						if (!bodies.isVisible(j))
+							continue;
+						distance(bodies, j, i, dist);
+						addAttraction(bodies, j, i, dist, overlapDim, overlapRec, SIDE_OTHER);
+					}
+					for (int k = bodies.neighborsStart(i); k < bodies.neighborsEnd(i); ++k) {
+						final int j = bodies.neighbor(k);
+						if (!bodies.isVisible(j))
+							continue;
+						distance(bodies, i, j, dist);
+						addAttraction(bodies, i, j, dist, overlapDim, overlapRec, SIDE_BODY);
+					}
+					if (!bodies.isFixed(i)) { // don't waste time if the element is active
+						addFrame(w, h, bodies, i, frameAlpha);
+						addGravity(w, h, bodies, i, anyFocussed);
+						addFixedBodyRespulsion(bodies, fixed, fixedCount, i, dist, false);
+					}
+				}
+			}
+		});
+	}
 
+	/**
+	 * the repulsion of a single body as computed by {@link #addRepulsion(ForcedBodies, double[])} for this body
+	 */
+	private static void addRepulsionRow(ForcedBodies bodies, int i, double[] dist) {
+		if (!bodies.isVisible(i))
+			return;
 		final int size = bodies.size();
+		for (int j = 0; j < size; ++j) {
+			if (j == i || !bodies.isVisible(j))
+				continue;
+			if (j < i) {
+				distance(bodies, j, i, dist);
+				addRepulsion(bodies, j, i, dist, SIDE_OTHER);
+			} else {
+				distance(bodies, i, j, dist);
+				addRepulsion(bodies, i, j, dist, SIDE_BODY);
+			}
+		}
+	}
+
+	/**
+	 * a range of bodies split into parallel tasks
+	 */
+	private static abstract class ForceTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		public ForceTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected final void compute() {
+			if (to - from <= parallelGrainSize) {
+				compute(from, to);
+				return;
+			}
+			final int mid = (from + to) >>> 1;
+			final ForceTask self = this;
+			invokeAll(new ForceTask(from, mid) {
+				@Override
+				protected void compute(int from, int to) {
+					self.compute(from, to);
+				}
+			}, new ForceTask(mid, to) {
+				@Override
+				protected void compute(int from, int to) {
+					self.compute(from, to);
+				}
+			});
+		}
+
+		protected abstract void compute(int from, int to);
+	}
+
+	/**
+	 * computes the distance between two bodies, see {@link Physics#distance}
+	 */
+	private static void distance(ForcedBodies bodies, int i, int j, double[] r) {
+		double bx = bodies.centerX[j];
+		double by = bodies.centerY[j];
+		if (bodies.centerX[i] == bx && bodies.centerY[i] == by) {
+			// same position: shift deterministically instead of randomly, such that the result doesn't depend on
+			// the order of evaluation and (i,j) is the opposite of (j,i)
+			long hash = Math.min(i, j) * 0x9E3779B97F4A7C15L + Math.max(i, j);
+			hash ^= hash >>> 31;
+			hash *= 0xBF58476D1CE4E5B9L;
+			hash ^= hash >>> 29;
+			final double angle = (hash & 0xffff) / 65536. * 2 * Math.PI;
+			final double length = i < j ? 5 : -5;
+			bx -= Math.cos(angle) * length;
+			by -= Math.sin(angle) * length;
+		}
+		Physics.distance(bodies.centerX[i], bodies.centerY[i], bodies.radiusX[i] * 2, bodies.radiusY[i] * 2, bx, by,
+				bodies.radiusX[j] * 2, bodies.radiusY[j] * 2, r);
+	}
 
+	/**
+	 * exact repulsion between all pairs of bodies
+	 */
+	private static void addRepulsion(ForcedBodies bodies, double[] dist) {
+		final int size = bodies.size();
 		for (int i = 0; i < size; ++i) { // Loop through Vertices
-			final ForcedBody body = bodies.get(i);
-			if (!body.isVisible())
+			if (!bodies.isVisible(i))
 				continue;
-			// repulsion
 			for (int j = i + 1; j < size; ++j) { // loop through other vertices
-				final ForcedBody other = bodies.get(j);
-				if (!other.isVisible())
+				if (!bodies.isVisible(j))
 					continue;
-				// squared distance between "u" and "v" in 2D space
 				// calculate the repulsion between two vertices
-				final Distance distVec = body.distanceTo(other);
-				final double distLength = distVec.getDistance();
-				addRepulsion(body, other, distVec, distLength);
-				addAttraction(body, other, distVec, distLength, overlapDim, overlapRec);
-			}
-			if (!body.isFixed()) { // don't waste time if the element is active
-				addFrame(w, h, body, frameAlpha);
-				addGravity(w, h, body, anyFocussed);
-				addFixedBodyRespulsion(fixedBodies, body);
+				distance(bodies, i, j, dist);
+				addRepulsion(bodies, i, j, dist, SIDE_BOTH);
 			}
 		}
+	}
 
-		applyForce(bodies, frameAlpha, overlapDim, overlapRec, areaFilled);
+	/**
+	 * Barnes-Hut approximation of the repulsion: far away groups of bodies are handled as a single body
+	 */
+	private void addApproximatedRepulsion(ForcedBodies bodies) {
+		final int count = prepareApproximatedRepulsion(bodies);
+		visitor.bodies = bodies;
+		for (int k = 0; k < count; ++k) {
+			visitor.body = indices[k];
+			tree.visit(indices[k], theta, visitor);
+		}
+	}
 
+	/**
+	 * builds the tree of the visible bodies
+	 *
+	 * @return the number of bodies in {@link #indices}
+	 */
+	private int prepareApproximatedRepulsion(ForcedBodies bodies) {
+		final int size = bodies.size();
+		if (indices.length < size) {
+			indices = new int[size];
+			weights = new double[size];
+		}
+		int count = 0;
+		for (int i = 0; i < size; ++i) {
+			if (!bodies.isVisible(i) || bodies.isInvalid(i))
+				continue;
+			indices[count++] = i;
+			weights[i] = bodies.isDraggedOrFocussed(i) ? 2 : 1;
+		}
+		tree.build(bodies, indices, count, weights);
+		return count;
 	}
 
+	/**
+	 * reusable visitor of the {@link BarnesHutTree} adding the repulsion to {@link #body}
+	 */
+	private static final class RepulsionVisitor implements BarnesHutTree.IVisitor {
+		private final double[] dist = new double[Physics.DISTANCE_SIZE];
+		private final BarnesHutTree.Cursor cursor = new BarnesHutTree.Cursor();
+		private ForcedBodies bodies;
+		private int body;
+
+		@Override
+		public void exact(int other) {
+			distance(bodies, body, other, dist);
+			addRepulsion(bodies, body, other, dist, SIDE_BODY);
+		}
 
-	private void applyForce(List<ForcedBody> bodies, double frameFactor, int overlapDim, int overlapRec,
+		@Override
+		public void approximate(double x, double y, int count, double mass, double radius) {
+			addRepulsion(bodies, body, x, y, bodies.isDraggedOrFocussed(body) ? 2 * count : mass, radius);
+		}
+	}
+
+	/**
+	 * @return the sum of the squared displacements
+	 */
+	private double applyForce(ForcedBodies bodies, double frameFactor, int overlapDim, int overlapRec,
 			double areaFilled) {
 		// use the area filled as an indicator how repulsive the elements should be
 		// the less filled the more repulsion
@@ -154,18 +444,20 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		// System.out.println(attraction + " " + repulsion + " " + frame);
 
 		// count forces together + apply + reset
-		for (ForcedBody body : bodies) { // reset forces
-			if (!body.isVisible() || body.isFixed()) {
-				body.resetForce();
+		final int size = bodies.size();
+		double energy = 0;
+		for (int i = 0; i < size; ++i) { // reset forces
+			if (!bodies.isVisible(i) || bodies.isFixed(i)) {
+				bodies.resetForce(i);
 				continue;
 			}
-			final double repForceX = checkPlausibility(body.getRepForceX() * repulsion);
-			final double repForceY = checkPlausibility(body.getRepForceY() * repulsion);
-			double attForceX = checkPlausibility(body.getAttForceX() * attraction);
-			double attForceY = checkPlausibility(body.getAttForceY() * attraction);
+			final double repForceX = checkPlausibility(bodies.repForceX[i] * repulsion);
+			final double repForceY = checkPlausibility(bodies.repForceY[i] * repulsion);
+			double attForceX = checkPlausibility(bodies.attForceX[i] * attraction);
+			double attForceY = checkPlausibility(bodies.attForceY[i] * attraction);
 
-			final double frameForceX = frame * body.getFrameForceX();
-			final double frameForceY = frame * body.getFrameForceY();
+			final double frameForceX = frame * bodies.frameForceX[i];
+			final double frameForceY = frame * bodies.frameForceY[i];
 
 			double forceX = repForceX + attForceX + frameForceX;
 			double forceY = repForceY + attForceY + frameForceY;
@@ -175,9 +467,11 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 			// System.out.println("  Fra: " + frameForceX + " " + frameForceY);
 			// System.out.println("  Sum: " + forceX + " " + forceY);
 
-			body.move(forceX, forceY);
-			body.resetForce();
+			bodies.move(i, forceX, forceY);
+			bodies.resetForce(i);
+			energy += forceX * forceX + forceY * forceY;
 		}
+		return energy;
 	}
 
 
@@ -189,26 +483,36 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		return v;
 	}
 
-	private static void addFixedBodyRespulsion(List<ForcedBody> toolBars, final ForcedBody body) {
-		for (ForcedBody toolbar : toolBars) {
-			final Distance distVec = body.distanceTo(toolbar);
-			addRepulsion(body, toolbar, distVec, distVec.getDistance());
+	/**
+	 * @param symmetric
+	 *            whether the fixed bodies get the force, too. Not needed as their forces are ignored, but done by the
+	 *            serial version
+	 */
+	private static void addFixedBodyRespulsion(ForcedBodies bodies, int[] fixed, int fixedCount, final int body,
+			double[] dist, boolean symmetric) {
+		for (int k = 0; k < fixedCount; ++k) {
+			final int toolbar = fixed[k];
+			distance(bodies, body, toolbar, dist);
+			addRepulsion(bodies, body, toolbar, dist, symmetric ? SIDE_BOTH : SIDE_BODY);
 		}
 	}
 
-	private void addFrame(float w, float h, final ForcedBody body, double frameAlpha) {
-		Vec2d distFromTopLeft = getDistanceFromTopLeft(body, w, h);
-		Vec2d distFromBottomRight = getDistanceFromBottomRight(body, w, h);
+	private void addFrame(float w, float h, ForcedBodies bodies, final int body, double frameAlpha) {
+		final double cx = bodies.centerX[body];
+		final double cy = bodies.centerY[body];
+		final double rx = bodies.radiusX[body];
+		final double ry = bodies.radiusY[body];
 
 		final double frameFactor = Math.max(0.8 - frameAlpha, 0);
 		// in earlier frames simulate a larger space (twice as large in the first iteration)
 		final double offsetX = 20 - w * frameFactor;
 		final double offsetY = 20 - h * frameFactor;
 
-		final double left = distFromTopLeft.x() - offsetX;
-		final double top = distFromTopLeft.y() - offsetY;
-		final double right = -distFromBottomRight.x() - offsetX;
-		final double bottom = -distFromBottomRight.y() - offsetY;
+		// distance from top left and bottom right
+		final double left = (cx - rx) - offsetX;
+		final double top = (cy - ry) - offsetY;
+		final double right = -(cx + rx - w) - offsetX;
+		final double bottom = -(cy + ry - h) - offsetY;
 
 		double xForce = 0;
 		double yForce = 0;
@@ -221,7 +525,8 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		yForce += borderForce(top, dropOff);
 		yForce -= borderForce(bottom, dropOff);
 
-		body.addFrameForce(xForce, yForce);
+		bodies.frameForceX[body] += xForce;
+		bodies.frameForceY[body] += yForce;
 	}
 
 	private double frameDropOff(float w, float h) {
@@ -236,14 +541,15 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 	 * @param body
 	 * @param anyFocussed
 	 */
-	private void addGravity(float w, float h, ForcedBody body, boolean anyFocussed) {
+	private void addGravity(float w, float h, ForcedBodies bodies, int body, boolean anyFocussed) {
 		if (anyFocussed)
 			return;
-		final double cx = body.getCenterX() - w * 0.5;
-		final double cy = body.getCenterY() - h * 0.5;
+		final double cx = bodies.centerX[body] - w * 0.5;
+		final double cy = bodies.centerY[body] - h * 0.5;
 
 		// if focussed away from the center else towards the center
-		body.addFrameForce(cx * -centerForce, cy * -centerForce);
+		bodies.frameForceX[body] += cx * -centerForce;
+		bodies.frameForceY[body] += cy * -centerForce;
 	}
 
 	/**
@@ -305,38 +611,81 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		}
 	}
 
-	private static void addRepulsion(final ForcedBody body, final ForcedBody other, final Distance distVec,
-			double distLength) {
+	/**
+	 * @param side
+	 *            to which bodies the force is applied
+	 */
+	private static void addRepulsion(ForcedBodies bodies, final int body, final int other, final double[] dist,
+			int side) {
 		double repX;
 		double repY;
 		// min distance for two elements
-		final double min_distance = (distVec.getR1() + distVec.getR2()) * minimumDistanceFactor;
-
-		Vec2d v;
-		if (distVec.isIntersection())
-			v = distVec.times(-1); // as the dist vec has the wrong direction
-		else
-			v = distVec;
+		final double min_distance = (dist[Physics.DISTANCE_R1] + dist[Physics.DISTANCE_R2]) * minimumDistanceFactor;
+
+		double distLength = dist[Physics.DISTANCE_LENGTH];
+		double vx = dist[Physics.DISTANCE_X];
+		double vy = dist[Physics.DISTANCE_Y];
+		if (distLength < 0) { // as the dist vec has the wrong direction
+			vx = -vx;
+			vy = -vy;
+		}
 		if (distLength < min_distance) // at least the min distance
 			distLength = min_distance;
 
-		double scale = (body.isDraggedOrFocussed() || other.isDraggedOrFocussed() ? 2 : 1);
+		double scale = (bodies.isDraggedOrFocussed(body) || bodies.isDraggedOrFocussed(other) ? 2 : 1);
 		scale /= (distLength * distLength);
-		repX = v.x() * scale;
-		repY = v.y() * scale;
+		repX = vx * scale;
+		repY = vy * scale;
 		if (Double.isNaN(repX) || Double.isNaN(repY))
 			return;
+		if ((side & SIDE_BODY) != 0) {
+			bodies.repForceX[body] += repX;
+			bodies.repForceY[body] += repY;
+		}
 		// as distance symmetrical
-		body.addRepForce(repX, repY);
-		other.addRepForce(-repX, -repY);
+		if ((side & SIDE_OTHER) != 0) {
+			bodies.repForceX[other] -= repX;
+			bodies.repForceY[other] -= repY;
+		}
 	}
 
-	private static void addAttraction(final ForcedBody body, final ForcedBody other, final Distance distVec,
-			final double distLength, int dimOverlapTotal, int recOverlapTotal) {
-		if (distVec.isIntersection()) // too close
+	/**
+	 * repulsion of a group of far away bodies to the given body, same as
+	 * {@link #addRepulsion(ForcedBodies, int, int, double[], int)} for a body at the center of mass
+	 *
+	 * @param scale
+	 *            the sum of the individual repulsion scales
+	 * @param radius
+	 *            the mean radius of the group
+	 */
+	private static void addRepulsion(ForcedBodies bodies, final int body, double x, double y, double scale,
+			double radius) {
+		final double dx = bodies.centerX[body] - x;
+		final double dy = bodies.centerY[body] - y;
+		final double d = Math.sqrt(dx * dx + dy * dy);
+		if (d <= 0)
+			return;
+		final double r1 = BarnesHutTree.radius(bodies, body);
+		final double d_real = d - r1 - radius;
+		final double min_distance = (r1 + radius) * minimumDistanceFactor;
+		final double distLength = d_real < min_distance ? min_distance : d_real;
+
+		// unit vector * |d_real| * scale / distLength^2
+		final double f = Math.abs(d_real) * scale / (distLength * distLength) / d;
+		final double repX = dx * f;
+		final double repY = dy * f;
+		if (Double.isNaN(repX) || Double.isNaN(repY))
 			return;
-		final int dimOverlap = body.getDimOverlap(other);
-		final int recOverlap = body.getRecOverlap(other);
+		bodies.repForceX[body] += repX;
+		bodies.repForceY[body] += repY;
+	}
+
+	private static void addAttraction(ForcedBodies bodies, final int body, final int other, final double[] dist,
+			int dimOverlapTotal, int recOverlapTotal, int side) {
+		if (dist[Physics.DISTANCE_LENGTH] < 0) // too close
+			return;
+		final int dimOverlap = bodies.getDimOverlap(body, other);
+		final int recOverlap = bodies.getRecOverlap(body, other);
 		final int totalOverlap = recOverlap + dimOverlap;
 
 		if (totalOverlap <= 0) // no overlap
@@ -348,54 +697,71 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 		// central force
 		{
 			double factor = 0.5 * (recPercent + dimPercent); // mean
-			double accX = distVec.x() * factor;
-			double accY = distVec.y() * factor;
+			double accX = dist[Physics.DISTANCE_X] * factor;
+			double accY = dist[Physics.DISTANCE_Y] * factor;
 			// as distance symmetrical
-			body.addAttForce(-accX, -accY);
-			other.addAttForce(accX, accY);
+			addAttForce(bodies, body, other, accX, accY, side);
 		}
 
+		final double[] cx = bodies.centerX;
+		final double[] cy = bodies.centerY;
+		final double[] rx = bodies.radiusX;
+		final double[] ry = bodies.radiusY;
+
 		// overlap specific force
 		if (recOverlap > 0) { // rec overlap connector in x dimension
-			double b_l = body.x0() - connectorOffset;
-			double b_r = body.x1() + connectorOffset;
-			double o_l = other.x0() - connectorOffset;
-			double o_r = other.x1() + connectorOffset;
+			double b_l = cx[body] - rx[body] - connectorOffset;
+			double b_r = cx[body] + rx[body] + connectorOffset;
+			double o_l = cx[other] - rx[other] - connectorOffset;
+			double o_r = cx[other] + rx[other] + connectorOffset;
 
-			double y = body.getCenterY() - body.getCenterY();
-			addAttractionConnector(body, other, recPercent, b_l - o_r, y, b_r - o_l, y);
+			double y = cy[body] - cy[body];
+			addAttractionConnector(bodies, body, other, recPercent, b_l - o_r, y, b_r - o_l, y, side);
 		}
 
 		if (dimOverlap > 0) {
-			double b_l = body.y0() - connectorOffset;
-			double b_r = body.y1() + connectorOffset;
-			double o_l = other.y0() - connectorOffset;
-			double o_r = other.y1() + connectorOffset;
+			double b_l = cy[body] - ry[body] - connectorOffset;
+			double b_r = cy[body] + ry[body] + connectorOffset;
+			double o_l = cy[other] - ry[other] - connectorOffset;
+			double o_r = cy[other] + ry[other] + connectorOffset;
 
-			double x = body.getCenterX() - body.getCenterX();
-			addAttractionConnector(body, other, recPercent, x, b_l - o_r, x, b_r - o_l);
+			double x = cx[body] - cx[body];
+			addAttractionConnector(bodies, body, other, recPercent, x, b_l - o_r, x, b_r - o_l, side);
 		}
 	}
 
-	private static void addAttractionConnector(final ForcedBody body, final ForcedBody other, double factor,
-			final double x1, double y1, final double x2, double y2) {
+	private static void addAttractionConnector(ForcedBodies bodies, final int body, final int other, double factor,
+			final double x1, double y1, final double x2, double y2, int side) {
 
 		final double d0 = x1 * x1 + y1 * y1;
 		final double d1 = x2 * x2 + y2 * y2;
 
-		Vec2d d;
-		if (d0 < d1)
-			d = new Vec2d(x1, y1);
-		else
-			d = new Vec2d(x2, y1);
+		double dx, dy;
+		if (d0 < d1) {
+			dx = x1;
+			dy = y1;
+		} else {
+			dx = x2;
+			dy = y1;
+		}
 
 		// factor /= d.length();
 
-		double accX = d.x() * factor;
-		double accY = d.y() * factor;
+		double accX = dx * factor;
+		double accY = dy * factor;
 		// as distance symmetrical
-		body.addAttForce(-accX, -accY);
-		other.addAttForce(accX, accY);
+		addAttForce(bodies, body, other, accX, accY, side);
+	}
+
+	private static void addAttForce(ForcedBodies bodies, int body, int other, double accX, double accY, int side) {
+		if ((side & SIDE_BODY) != 0) {
+			bodies.attForceX[body] -= accX;
+			bodies.attForceY[body] -= accY;
+		}
+		if ((side & SIDE_OTHER) != 0) {
+			bodies.attForceX[other] += accX;
+			bodies.attForceY[other] += accY;
+		}
 	}
 
 	private static double checkPlausibility(double v) {
@@ -407,31 +773,85 @@ public class ForceBasedLayoutTuned2 extends AForceBasedLayoutTuned {
 	}
 
 	@Override
-	protected void initialLayout(List<ForcedBody> bodies, float w, float h) {
-		for(ForcedBody body : bodies) {
-			initialPosition(body, w, h, bodies);
+	protected void initialLayout(ForcedBodies bodies, float w, float h) {
+		if (mds.place(bodies, w, h)) { // start from the overlap structure
+			bodies.updateGrid(grid);
+			for (int i = 0; i < bodies.size(); ++i)
+				if (bodies.isInvalid(i))
+					initialPosition(bodies, i, w, h);
+			return;
+		}
+		bodies.updateGrid(grid);
+		for (int i = 0; i < bodies.size(); ++i) {
+			initialPosition(bodies, i, w, h);
 			// System.out.println(body);
 		}
 	}
 
 	@Override
-	protected void initialPosition(ForcedBody body, float w, float h, List<ForcedBody> bodies) {
-		for(ForcedBody neighbor : body.neighbors(bodies)) {
+	protected void initialPositions(ForcedBodies bodies, float w, float h) {
+		bodies.updateGrid(grid);
+		super.initialPositions(bodies, w, h);
+	}
+
+	@Override
+	protected void initialPosition(ForcedBodies bodies, int i, float w, float h) {
+		placeBody(bodies, i, w, h);
+		bodies.updateGrid(grid, i);
+	}
+
+	/**
+	 * places the body near its first valid neighbor, at its scaled MDS position or at a random position. The first
+	 * free candidate, according to {@link #grid}, is used
+	 */
+	private void placeBody(ForcedBodies bodies, int i, float w, float h) {
+		final ForcedBody body = bodies.get(i);
+		for(ForcedBody neighbor : body.neighbors(bodies.bodies())) {
 			if (!neighbor.isInvalid()) { //near the first valid neighbor
 				int rec = body.getRecOverlap(neighbor);
 				int dim = body.getDimOverlap(neighbor);
-				double offsetX = (body.radiusX + neighbor.radiusX) * initialDistanceFactor;
-				double offsetY = (body.radiusX + neighbor.radiusX) * initialDistanceFactor;
+				double offsetX = (body.getRadiusX() + neighbor.getRadiusX()) * initialDistanceFactor;
+				double offsetY = (body.getRadiusX() + neighbor.getRadiusX()) * initialDistanceFactor;
 				if (rec <= 0)
 					offsetX = 0;
 				if (dim <= 0)
 					offsetY = 0;
-				body.setLocation(neighbor.getCenterX() + offsetX * (r.nextBoolean() ? 1 : -1),
-						neighbor.getCenterY() + offsetY * (r.nextBoolean() ? 1 : -1));
+				// try all four sides starting with a random one
+				final int start = random.nextInt(4);
+				double x = 0, y = 0;
+				for (int k = 0; k < 4; ++k) {
+					final int side = (start + k) & 3;
+					x = neighbor.getCenterX() + offsetX * ((side & 1) == 0 ? 1 : -1);
+					y = neighbor.getCenterY() + offsetY * ((side & 2) == 0 ? 1 : -1);
+					if (isFree(bodies, i, x, y))
+						break;
+				}
+				body.setLocation(x, y);
 				return;
 			}
 		}
-		body.setLocation(r.nextDouble() * w - 2 * body.radiusX + body.radiusX, r.nextDouble() * h - 2
-				* body.radiusY + body.radiusY);
+		if (mds.place(bodies, i))
+			return;
+		double x = 0, y = 0;
+		for (int k = 0; k < maxPlacementTries; ++k) {
+			x = random.nextDouble() * w - 2 * body.getRadiusX() + body.getRadiusX();
+			y = random.nextDouble() * h - 2 * body.getRadiusY() + body.getRadiusY();
+			if (isFree(bodies, i, x, y))
+				break;
+		}
+		body.setLocation(x, y);
+	}
+
+	/**
+	 * @return whether the body centered at the given position doesn't collide with any placed body
+	 */
+	private boolean isFree(ForcedBodies bodies, int i, double x, double y) {
+		final double rX = bodies.radiusX[i];
+		final double rY = bodies.radiusY[i];
+		final int hits = grid.query(x - rX, y - rY, rX * 2, rY * 2);
+		for (int k = 0; k < hits; ++k)
+			if (grid.getHit(k) != i)
+				return false;
+		return true;
 	}
 }
@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem.layout;
+
+import gleem.linalg.Vec2f;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.caleydo.core.view.opengl.layout2.GLElement;
+import org.caleydo.core.view.opengl.layout2.layout.IGLLayoutElement;
+import org.caleydo.view.bicluster.elem.ClusterElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
+import org.caleydo.view.bicluster.util.UniformGrid;
+
+/**
+ * reusable structure of arrays store of all bodies of a simulation step: the clusters are stored at [0, size) followed
+ * by the toolbars at [size, size + toolBars).
+ *
+ * the store is filled on the render thread and afterwards just accessed by the simulation, such that it can be reused
+ * from step to step without any allocation. {@link ForcedBody} is a view of a single entry
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class ForcedBodies {
+	/**
+	 * internal flags in addition to the {@link ForcedBody} ones
+	 */
+	static final int FLAG_VISIBLE = 1 << 10;
+	static final int FLAG_PLACED = 1 << 11;
+
+	private int size = 0;
+	private int toolBars = 0;
+
+	IGLLayoutElement[] elems = new IGLLayoutElement[0];
+	int[] flags = new int[0];
+	double[] centerX = new double[0];
+	double[] centerY = new double[0];
+	double[] radiusX = new double[0];
+	double[] radiusY = new double[0];
+	/**
+	 * where the body started from or was explicitly placed at
+	 */
+	double[] startX = new double[0];
+	double[] startY = new double[0];
+	float[] elemWidth = new float[0];
+	float[] elemHeight = new float[0];
+
+	double[] attForceX = new double[0];
+	double[] attForceY = new double[0];
+	double[] repForceX = new double[0];
+	double[] repForceY = new double[0];
+	double[] frameForceX = new double[0];
+	double[] frameForceY = new double[0];
+
+	/**
+	 * index within the overlap graph, -1 for toolbars
+	 */
+	int[] graphIndex = new int[0];
+	int[] dimTotalOverlaps = new int[0];
+	int[] recTotalOverlaps = new int[0];
+	/**
+	 * number of dimensions and records of the cluster, 0 for toolbars
+	 */
+	int[] dimSizes = new int[0];
+	int[] recSizes = new int[0];
+
+	private ForcedBody[] views = new ForcedBody[0];
+	private final List<ForcedBody> bodiesList = new ArrayList<>();
+	private final List<ForcedBody> toolBarsList = new ArrayList<>();
+
+	private OverlapGraph graph;
+	private boolean dimBands;
+	private boolean recBands;
+
+	/**
+	 * overlapping neighbors of body i with a larger index at [neighborOffsets[i], neighborOffsets[i+1])
+	 */
+	private int[] neighborOffsets = new int[1];
+	private int[] neighbors = new int[0];
+	/**
+	 * the reverse: bodies j with a smaller index having i as neighbor at [reverseOffsets[i], reverseOffsets[i+1]) in
+	 * ascending order
+	 */
+	private int[] reverseOffsets = new int[1];
+	private int[] reverse = new int[0];
+	private int[] reverseFill = new int[0];
+	private int[] lookup = new int[0];
+
+	/**
+	 * removes all bodies
+	 *
+	 * @param graph
+	 *            the overlap graph to use
+	 * @param dimBands
+	 *            whether dimension overlaps are considered
+	 * @param recBands
+	 *            whether record overlaps are considered
+	 */
+	void clear(OverlapGraph graph, boolean dimBands, boolean recBands) {
+		this.size = 0;
+		this.toolBars = 0;
+		this.graph = graph;
+		this.dimBands = dimBands;
+		this.recBands = recBands;
+		bodiesList.clear();
+		toolBarsList.clear();
+		Arrays.fill(elems, null);
+	}
+
+	/**
+	 * adds a cluster body, all clusters have to be added before the toolbars
+	 *
+	 * @param elem
+	 * @param flags
+	 * @param location
+	 *            the location to start from
+	 * @return the index of the body
+	 */
+	int add(IGLLayoutElement elem, int flags, Vec2f location) {
+		final ClusterElement cluster = (ClusterElement) elem.asElement();
+		return add(elem, visibility(elem, flags), location.x(), location.y(), elem.getWidth(), elem.getHeight(),
+				graph.indexOf(cluster), cluster.getDimSize(), cluster.getRecSize(), cluster.getDimTotalOverlaps(),
+				cluster.getRecTotalOverlaps());
+	}
+
+	/**
+	 * adds a cluster body without an element, e.g. for running a layout without a view
+	 *
+	 * @param flags
+	 *            including {@link #FLAG_VISIBLE}
+	 * @param x
+	 *            left of the element
+	 * @param y
+	 *            top of the element
+	 * @param graphIndex
+	 *            the index within the overlap graph
+	 * @return the index of the body
+	 */
+	int add(IGLLayoutElement elem, int flags, float x, float y, float width, float height, int graphIndex,
+			int dimSize, int recSize, int dimTotalOverlaps, int recTotalOverlaps) {
+		assert toolBars == 0;
+		final int i = add(elem, flags, x, y, width, height, 1.2);
+		size++;
+		this.graphIndex[i] = graphIndex;
+		this.dimTotalOverlaps[i] = dimTotalOverlaps;
+		this.recTotalOverlaps[i] = recTotalOverlaps;
+		this.dimSizes[i] = dimSize;
+		this.recSizes[i] = recSize;
+		bodiesList.add(views[i]);
+		return i;
+	}
+
+	/**
+	 * adds a toolbar body
+	 *
+	 * @param elem
+	 * @return the index of the body or -1 if it has no valid position yet
+	 */
+	int addToolBar(IGLLayoutElement elem) {
+		Vec2f location = elem.asElement().getAbsoluteLocation();
+		if (Float.isNaN(location.x()) || Float.isNaN(location.y()))
+			return -1;
+		return addToolBar(elem, visibility(elem, ForcedBody.FLAG_TOOLBAR), location.x(), location.y(),
+				elem.getWidth(), elem.getHeight());
+	}
+
+	/**
+	 * adds a toolbar body without an element, e.g. for running a layout without a view
+	 */
+	int addToolBar(IGLLayoutElement elem, int flags, float x, float y, float width, float height) {
+		final int i = add(elem, flags | ForcedBody.FLAG_TOOLBAR, x, y, width, height, 1.5); // enlarge toolbars
+		toolBars++;
+		graphIndex[i] = -1;
+		dimTotalOverlaps[i] = 0;
+		recTotalOverlaps[i] = 0;
+		dimSizes[i] = 0;
+		recSizes[i] = 0;
+		toolBarsList.add(views[i]);
+		return i;
+	}
+
+	/**
+	 * snapshot of the element state, such that the simulation doesn't need to access the element
+	 */
+	private static int visibility(IGLLayoutElement elem, int flags) {
+		GLElement g = elem.asElement();
+		if (g.getVisibility().doRender() && g.getParent() != null)
+			flags |= FLAG_VISIBLE;
+		return flags;
+	}
+
+	private int add(IGLLayoutElement elem, int flags, float x, float y, float width, float height, double scale) {
+		final int i = size + toolBars;
+		ensureCapacity(i + 1);
+		final boolean isInitialRun = (flags & ForcedBody.FLAG_INITIAL) != 0;
+
+		elems[i] = elem;
+		this.flags[i] = flags;
+		elemWidth[i] = width;
+		elemHeight[i] = height;
+
+		final double rX = elemWidth[i] * 0.5;
+		final double rY = elemHeight[i] * 0.5;
+		centerX[i] = startX[i] = isInitialRun ? Double.NaN : (x + rX);
+		centerY[i] = startY[i] = isInitialRun ? Double.NaN : (y + rY);
+		radiusX[i] = rX * scale;
+		radiusY[i] = rY * scale;
+		resetForce(i);
+		return i;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= elems.length)
+			return;
+		final int l = Math.max(16, Math.max(capacity, elems.length * 2));
+		elems = Arrays.copyOf(elems, l);
+		flags = Arrays.copyOf(flags, l);
+		centerX = Arrays.copyOf(centerX, l);
+		centerY = Arrays.copyOf(centerY, l);
+		radiusX = Arrays.copyOf(radiusX, l);
+		radiusY = Arrays.copyOf(radiusY, l);
+		startX = Arrays.copyOf(startX, l);
+		startY = Arrays.copyOf(startY, l);
+		elemWidth = Arrays.copyOf(elemWidth, l);
+		elemHeight = Arrays.copyOf(elemHeight, l);
+		attForceX = Arrays.copyOf(attForceX, l);
+		attForceY = Arrays.copyOf(attForceY, l);
+		repForceX = Arrays.copyOf(repForceX, l);
+		repForceY = Arrays.copyOf(repForceY, l);
+		frameForceX = Arrays.copyOf(frameForceX, l);
+		frameForceY = Arrays.copyOf(frameForceY, l);
+		graphIndex = Arrays.copyOf(graphIndex, l);
+		dimTotalOverlaps = Arrays.copyOf(dimTotalOverlaps, l);
+		recTotalOverlaps = Arrays.copyOf(recTotalOverlaps, l);
+		dimSizes = Arrays.copyOf(dimSizes, l);
+		recSizes = Arrays.copyOf(recSizes, l);
+		final int old = views.length;
+		views = Arrays.copyOf(views, l);
+		for (int i = old; i < l; ++i)
+			views[i] = new ForcedBody(this, i);
+	}
+
+	/**
+	 * @return the number of cluster bodies
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of cluster and toolbar bodies
+	 */
+	int total() {
+		return size + toolBars;
+	}
+
+	ForcedBody get(int i) {
+		return views[i];
+	}
+
+	/**
+	 * @return views of the cluster bodies, not to be modified
+	 */
+	List<ForcedBody> bodies() {
+		return bodiesList;
+	}
+
+	/**
+	 * @return views of the toolbar bodies, not to be modified
+	 */
+	List<ForcedBody> toolBars() {
+		return toolBarsList;
+	}
+
+	OverlapGraph getOverlapGraph() {
+		return graph;
+	}
+
+	boolean isDimBands() {
+		return dimBands;
+	}
+
+	boolean isRecBands() {
+		return recBands;
+	}
+
+	boolean isVisible(int i) {
+		return (flags[i] & FLAG_VISIBLE) != 0;
+	}
+
+	boolean isInvalid(int i) {
+		return Double.isNaN(centerX[i]) || Double.isNaN(centerY[i]);
+	}
+
+	boolean isFixed(int i) {
+		return (flags[i] & (ForcedBody.FLAG_FOCUSSED | ForcedBody.FLAG_DRAGGED | ForcedBody.FLAG_HOVERED
+				| ForcedBody.FLAG_TOOLBAR)) != 0;
+	}
+
+	boolean isFocussed(int i) {
+		return (flags[i] & ForcedBody.FLAG_FOCUSSED) != 0;
+	}
+
+	boolean isDraggedOrFocussed(int i) {
+		return (flags[i] & (ForcedBody.FLAG_FOCUSSED | ForcedBody.FLAG_DRAGGED | ForcedBody.FLAG_TOOLBAR)) != 0;
+	}
+
+	boolean isPlaced(int i) {
+		return (flags[i] & FLAG_PLACED) != 0;
+	}
+
+	double getArea(int i) {
+		return radiusX[i] * radiusY[i] * 4;
+	}
+
+	/**
+	 * explicitly places the body at the given center
+	 */
+	void setLocation(int i, double x, double y) {
+		centerX[i] = startX[i] = x;
+		centerY[i] = startY[i] = y;
+		flags[i] |= FLAG_PLACED;
+	}
+
+	void move(int i, double x, double y) {
+		centerX[i] += x;
+		centerY[i] += y;
+	}
+
+	void resetForce(int i) {
+		attForceX[i] = 0;
+		attForceY[i] = 0;
+		repForceX[i] = 0;
+		repForceY[i] = 0;
+		frameForceX[i] = 0;
+		frameForceY[i] = 0;
+	}
+
+	/**
+	 * damps the movement since the start or the last explicit placement
+	 *
+	 * @return the squared distance moved
+	 */
+	double dampen(int i, double damping) {
+		double dx = centerX[i] - startX[i];
+		double dy = centerY[i] - startY[i];
+		if (damping < 1) {
+			dx *= damping;
+			dy *= damping;
+			centerX[i] = startX[i] + dx;
+			centerY[i] = startY[i] + dy;
+		}
+		if (Double.isNaN(dx) || Double.isNaN(dy))
+			return 0;
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * starts the next simulation step from the current positions, same as refilling the bodies from the elements
+	 */
+	void restart() {
+		final int total = total();
+		for (int i = 0; i < total; ++i) {
+			startX[i] = centerX[i];
+			startY[i] = centerY[i];
+			flags[i] &= ~(FLAG_PLACED | ForcedBody.FLAG_INITIAL);
+			resetForce(i);
+		}
+	}
+
+	/**
+	 * @return the position of body j in the overlap graph row of body i or -1
+	 */
+	private int find(int i, int j) {
+		if (graphIndex[i] < 0 || graphIndex[j] < 0)
+			return -1;
+		return graph.find(graphIndex[i], graphIndex[j]);
+	}
+
+	int getOverlap(int i, int j) {
+		return getRecOverlap(i, j) + getDimOverlap(i, j);
+	}
+
+	int getRecOverlap(int i, int j) {
+		if (!recBands)
+			return 0;
+		final int k = find(i, j);
+		return k < 0 ? 0 : graph.recOverlap(k);
+	}
+
+	int getDimOverlap(int i, int j) {
+		if (!dimBands)
+			return 0;
+		final int k = find(i, j);
+		return k < 0 ? 0 : graph.dimOverlap(k);
+	}
+
+	/**
+	 * updates the grid with the bounds of all visible and valid bodies, the id is the index of the body
+	 */
+	void updateGrid(UniformGrid grid) {
+		final int total = total();
+		double sum = 0;
+		int count = 0;
+		for (int i = 0; i < total; ++i) {
+			if (isVisible(i) && !isInvalid(i)) {
+				sum += radiusX[i] + radiusY[i];
+				count++;
+			}
+		}
+		if (count > 0)
+			grid.ensureCellSize(sum / count);
+		for (int i = 0; i < total; ++i)
+			updateGrid(grid, i);
+		grid.truncate(total);
+	}
+
+	/**
+	 * updates the grid entry of the given body
+	 */
+	void updateGrid(UniformGrid grid, int i) {
+		if (isVisible(i) && !isInvalid(i))
+			grid.update(i, centerX[i] - radiusX[i], centerY[i] - radiusY[i], radiusX[i] * 2, radiusY[i] * 2);
+		else
+			grid.remove(i);
+	}
+
+	/**
+	 * computes for each cluster body the overlapping neighbors with a larger index, see {@link #neighborsStart(int)}
+	 */
+	void updateNeighbors() {
+		// graph index to body index
+		if (lookup.length < graph.size())
+			lookup = new int[graph.size()];
+		Arrays.fill(lookup, 0, graph.size(), -1);
+		for (int i = 0; i < size; ++i) {
+			if (graphIndex[i] >= 0)
+				lookup[graphIndex[i]] = i;
+		}
+		if (neighborOffsets.length < size + 1)
+			neighborOffsets = new int[size + 1];
+		int n = 0;
+		for (int i = 0; i < size; ++i) {
+			neighborOffsets[i] = n;
+			final int g = graphIndex[i];
+			if (g < 0)
+				continue;
+			for (int k = graph.start(g); k < graph.end(g); ++k) {
+				final int j = lookup[graph.neighbor(k)];
+				if (j <= i || !graph.isOverlapping(k, dimBands, recBands)) // just enabled overlaps
+					continue;
+				if (n == neighbors.length)
+					neighbors = Arrays.copyOf(neighbors, Math.max(16, n * 2));
+				neighbors[n++] = j;
+			}
+		}
+		neighborOffsets[size] = n;
+
+		// reverse by a counting sort, ascending as the rows are processed in order
+		if (reverseOffsets.length < size + 1)
+			reverseOffsets = new int[size + 1];
+		if (reverse.length < n)
+			reverse = new int[neighbors.length];
+		Arrays.fill(reverseOffsets, 0, size + 1, 0);
+		for (int k = 0; k < n; ++k)
+			reverseOffsets[neighbors[k] + 1]++;
+		for (int i = 0; i < size; ++i)
+			reverseOffsets[i + 1] += reverseOffsets[i];
+		if (reverseFill.length < size)
+			reverseFill = new int[size];
+		System.arraycopy(reverseOffsets, 0, reverseFill, 0, size);
+		for (int j = 0; j < size; ++j) {
+			for (int k = neighborOffsets[j]; k < neighborOffsets[j + 1]; ++k)
+				reverse[reverseFill[neighbors[k]]++] = j;
+		}
+	}
+
+	int neighborsStart(int i) {
+		return neighborOffsets[i];
+	}
+
+	int neighborsEnd(int i) {
+		return neighborOffsets[i + 1];
+	}
+
+	int neighbor(int k) {
+		return neighbors[k];
+	}
+
+	int reverseStart(int i) {
+		return reverseOffsets[i];
+	}
+
+	int reverseEnd(int i) {
+		return reverseOffsets[i + 1];
+	}
+
+	int reverse(int k) {
+		return reverse[k];
+	}
+}
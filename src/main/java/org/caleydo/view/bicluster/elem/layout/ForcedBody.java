@@ -5,25 +5,19 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem.layout;
 
-import gleem.linalg.Vec2f;
-
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Random;
 
-import org.caleydo.core.view.opengl.layout2.GLElement;
-import org.caleydo.core.view.opengl.layout2.layout.IGLLayoutElement;
 import org.caleydo.view.bicluster.elem.ClusterElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
 import org.caleydo.view.bicluster.physics.Physics;
 import org.caleydo.view.bicluster.physics.Physics.Distance;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
-
 /**
- * representation of a forced element
+ * representation of a forced element, a view of an entry of a {@link ForcedBodies} store
  *
  * @author Samuel Gratzl
  *
@@ -35,138 +29,119 @@ class ForcedBody extends Rectangle2D {
 	public static final int FLAG_TOOLBAR = 1 << 4;
 	public static final int FLAG_INITIAL = 1 << 5;
 
-	private final int flags;
-	private final IGLLayoutElement elem;
-
-	public final double radiusX;
-	public final double radiusY;
-
-	private double attForceX = 0;
-	private double attForceY = 0;
-
-	private double repForceX = 0;
-	private double repForceY = 0;
-
-	private double frameForceX = 0;
-	private double frameForceY = 0;
+	private final ForcedBodies store;
+	private final int index;
 
-	private double centerX;
-	private double centerY;
-
-	public ForcedBody(IGLLayoutElement elem, int flags) {
-		this.elem = elem;
-		this.flags = flags;
+	ForcedBody(ForcedBodies store, int index) {
+		this.store = store;
+		this.index = index;
+	}
 
-		final boolean isTooBar = (flags & FLAG_TOOLBAR) != 0;
-		final boolean isInitialRun = (flags & FLAG_INITIAL) != 0;
+	/**
+	 * @return the index within the store
+	 */
+	public int getIndex() {
+		return index;
+	}
 
-		Vec2f location = isTooBar ? elem.asElement().getAbsoluteLocation() : elem.getLocation();
-		double rX = elem.getWidth() * 0.5;
-		double rY = elem.getHeight() * 0.5;
-		centerX = isInitialRun ? java.lang.Double.NaN : (location.x() + rX);
-		centerY = isInitialRun ? java.lang.Double.NaN : (location.y() + rY);
+	public double getRadiusX() {
+		return store.radiusX[index];
+	}
 
-		// enlarge toolbars
-		final double scale = (isTooBar ? 1.5 : 1.2);
-		radiusX = rX * scale;
-		radiusY = rY * scale;
+	public double getRadiusY() {
+		return store.radiusY[index];
 	}
 
-	/**
-	 * @return the attForceX, see {@link #attForceX}
-	 */
 	public double getAttForceX() {
-		return attForceX;
+		return store.attForceX[index];
 	}
 
-	/**
-	 * @return the attForceY, see {@link #attForceY}
-	 */
 	public double getAttForceY() {
-		return attForceY;
+		return store.attForceY[index];
 	}
 
-	/**
-	 * @return the frameForceX, see {@link #frameForceX}
-	 */
 	public double getFrameForceX() {
-		return frameForceX;
+		return store.frameForceX[index];
 	}
 
-	/**
-	 * @return the frameForceY, see {@link #frameForceY}
-	 */
 	public double getFrameForceY() {
-		return frameForceY;
+		return store.frameForceY[index];
+	}
+
+	public double getRepForceX() {
+		return store.repForceX[index];
+	}
+
+	public double getRepForceY() {
+		return store.repForceY[index];
+	}
+
+	public void move(double x, double y) {
+		store.move(index, x, y);
 	}
 
 	/**
-	 * @return the repForceX, see {@link #repForceX}
+	 * @return the index within the overlap graph or -1 if none
 	 */
-	public double getRepForceX() {
-		return repForceX;
+	public int getGraphIndex() {
+		return store.graphIndex[index];
 	}
 
 	/**
-	 * @return the repForceY, see {@link #repForceY}
+	 * @return the total dimension overlaps of the cluster, see {@link ClusterElement#getDimTotalOverlaps()}
 	 */
-	public double getRepForceY() {
-		return repForceY;
+	public int getDimTotalOverlaps() {
+		return store.dimTotalOverlaps[index];
 	}
 
-	public void move(double x, double y) {
-		if (java.lang.Double.isNaN(x))
-			System.err.println();
-		centerX += x;
-		centerY += y;
+	/**
+	 * @return the total record overlaps of the cluster, see {@link ClusterElement#getRecTotalOverlaps()}
+	 */
+	public int getRecTotalOverlaps() {
+		return store.recTotalOverlaps[index];
 	}
 
 	public int getOverlap(ForcedBody other) {
-		ClusterElement o = other.asClusterElement();
-		ClusterElement c = asClusterElement();
-		int rsize = c.getRecOverlap(o);
-		int csize = c.getDimOverlap(o);
-		return rsize + csize;
+		return getRecOverlap(other) + getDimOverlap(other);
 	}
 
 	public int getRecOverlap(ForcedBody other) {
-		ClusterElement o = other.asClusterElement();
-		ClusterElement c = asClusterElement();
-		return c.getRecOverlap(o);
+		return store.getRecOverlap(index, other.index);
 	}
 
 	public int getDimOverlap(ForcedBody other) {
-		ClusterElement o = other.asClusterElement();
-		ClusterElement c = asClusterElement();
-		return c.getDimOverlap(o);
+		return store.getDimOverlap(index, other.index);
 	}
 
 	public void addAttForce(double attX, double attY) {
-		attForceX += attX;
-		attForceY += attY;
+		store.attForceX[index] += attX;
+		store.attForceY[index] += attY;
 	}
 
 	public void addRepForce(double repX, double repY) {
-		repForceX += repX;
-		repForceY += repY;
+		store.repForceX[index] += repX;
+		store.repForceY[index] += repY;
 	}
 
 	public void addFrameForce(double xForce, double yForce) {
-		frameForceX += xForce;
-		frameForceY += yForce;
+		store.frameForceX[index] += xForce;
+		store.frameForceY[index] += yForce;
 	}
 
 	public Distance distanceTo(ForcedBody other) {
 		return Physics.distance(this, other);
 	}
 
+	/**
+	 * @param random
+	 *            source of the random shift of bodies at the same position
+	 */
+	public Distance distanceTo(ForcedBody other, Random random) {
+		return Physics.distance(this, other, random);
+	}
+
 	public void resetForce() {
-		attForceX = 0;
-		attForceY = 0;
-		repForceX = 0;
-		repForceY = 0;
-		frameForceX = 0;
-		frameForceY = 0;
+		store.resetForce(index);
 	}
 
 	/**
@@ -174,83 +149,53 @@ class ForcedBody extends Rectangle2D {
 	 */
 	public ClusterElement asClusterElement() {
 		assert !isToolBar();
-		return (ClusterElement) elem.asElement();
+		return (ClusterElement) store.elems[index].asElement();
 	}
 
 	public boolean isDraggedOrFocussed() {
-		return (flags & (FLAG_FOCUSSED | FLAG_DRAGGED | FLAG_TOOLBAR)) != 0;
+		return store.isDraggedOrFocussed(index);
 	}
 
 	public boolean isFocussed() {
-		return (flags & FLAG_FOCUSSED) != 0;
+		return store.isFocussed(index);
 	}
 
 	public boolean isFixed() {
-		return (flags & (FLAG_FOCUSSED | FLAG_DRAGGED | FLAG_HOVERED | FLAG_TOOLBAR)) != 0;
+		return store.isFixed(index);
 	}
 
 	public boolean isToolBar() {
-		return (flags & FLAG_TOOLBAR) != 0;
+		return (store.flags[index] & FLAG_TOOLBAR) != 0;
 	}
 
 	public double y0() {
-		return centerY - radiusY;
+		return store.centerY[index] - store.radiusY[index];
 	}
 
 	public double x0() {
-		return centerX - radiusX;
+		return store.centerX[index] - store.radiusX[index];
 	}
 
 	public double x1() {
-		return centerX + radiusX;
+		return store.centerX[index] + store.radiusX[index];
 	}
 
 	public double y1() {
-		return centerY + radiusY;
+		return store.centerY[index] + store.radiusY[index];
 	}
 
 	/**
-	 * set the new location
+	 * explicitly places the body at the given center
 	 *
-	 * @param damping
-	 *
-	 * @return the squared distance moved
+	 * @param x
+	 * @param y
 	 */
-	public double apply(double damping) {
-		assert !isToolBar();
-		Vec2f ori = elem.getLocation();
-		double x0 = centerX - elem.getWidth() * 0.5;
-		double y0 = centerY - elem.getHeight() * 0.5;
-		// where we want to be
-		if (damping < 1) {
-			double dx = x0 - ori.x();
-			double dy = y0 - ori.y();
-			x0 = ori.x() + dx * damping;
-			y0 = ori.y() + dy * damping;
-		}
-		// really set the location
-		elem.setLocation((float) x0, (float) y0);
-
-		// distance moved
-		x0 -= ori.x();
-		y0 -= ori.y();
-		// if (java.lang.Double.isNaN(x0) || java.lang.Double.isNaN(y0))
-		// System.err.println();
-		return x0 * x0 + y0 * y0;
-	}
-
 	public void setLocation(double x, double y) {
-		centerX = x;
-		centerY = y;
-		double x0 = centerX - elem.getWidth() * 0.5;
-		double y0 = centerY - elem.getHeight() * 0.5;
-		// really set the location
-		elem.setLocation((float) x0, (float) y0);
+		store.setLocation(index, x, y);
 	}
 
 	public boolean isVisible() {
-		GLElement elem = this.elem.asElement();
-		return elem.getVisibility().doRender() && elem.getParent() != null;
+		return store.isVisible(index);
 	}
 
 	@Override
@@ -304,22 +249,22 @@ class ForcedBody extends Rectangle2D {
 
 	@Override
 	public double getWidth() {
-		return radiusX * 2;
+		return store.radiusX[index] * 2;
 	}
 
 	@Override
 	public double getHeight() {
-		return radiusY * 2;
+		return store.radiusY[index] * 2;
 	}
 
 	@Override
 	public double getCenterX() {
-		return centerX;
+		return store.centerX[index];
 	}
 
 	@Override
 	public double getCenterY() {
-		return centerY;
+		return store.centerY[index];
 	}
 
 	@Override
@@ -329,21 +274,21 @@ class ForcedBody extends Rectangle2D {
 
 	@Override
 	public String toString() {
-		return String.format("%s %2f %2f", elem.toString(), centerX, centerY);
+		return String.format("%s %2f %2f", store.elems[index], getCenterX(), getCenterY());
 	}
 
 	/**
 	 * @return
 	 */
 	public boolean isInvalid() {
-		return java.lang.Double.isNaN(centerX) || java.lang.Double.isNaN(centerY);
+		return store.isInvalid(index);
 	}
 
 	/**
 	 * @return
 	 */
 	public double getArea() {
-		return radiusX * radiusY * 4;
+		return store.getArea(index);
 	}
 
 	/**
@@ -351,15 +296,15 @@ class ForcedBody extends Rectangle2D {
 	 * @return
 	 */
 	public Iterable<ForcedBody> neighbors(List<ForcedBody> bodies) {
-		ClusterElement c = asClusterElement();
-		if ((c.getRecTotalOverlaps() + c.getDimTotalOverlaps()) == 0)
+		final OverlapGraph graph = store.getOverlapGraph();
+		final int g = getGraphIndex();
+		if (g < 0 || graph.start(g) == graph.end(g))
 			return Collections.emptyList(); // no neighbors
-		final Set<ClusterElement> neighor = ImmutableSet.copyOf(c.getAnyOverlappingNeighbors());
-		return Iterables.filter(bodies, new Predicate<ForcedBody>() {
-			@Override
-			public boolean apply(ForcedBody input) {
-				return neighor.contains(input.asClusterElement());
-			}
-		});
-	}
-}
\ No newline at end of file
+		List<ForcedBody> r = new ArrayList<>();
+		for (ForcedBody body : bodies) {
+			if (body != this && store.getOverlap(index, body.index) > 0)
+				r.add(body);
+		}
+		return r;
+	}
+}
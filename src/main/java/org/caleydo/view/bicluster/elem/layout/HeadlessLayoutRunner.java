@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem.layout;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.caleydo.view.bicluster.elem.OverlapGraph;
+import org.caleydo.view.bicluster.util.UniformGrid;
+
+/**
+ * runs the tuned force based layouts without any view on synthetic clusters for regression and performance testing.
+ *
+ * everything is derived from the seed and a fixed number of iterations per step is used, such that the resulting
+ * positions and thus the checksum are reproducible. Usage:
+ *
+ * <pre>
+ * HeadlessLayoutRunner [seed] [clusters] [iterationsPerStep] [maxSteps]
+ * </pre>
+ *
+ * prints for every layout the number of steps till convergence, the final energy, the number of overlapping clusters,
+ * the time per iteration and a checksum of the positions
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class HeadlessLayoutRunner {
+	private static final float WIDTH = 1600;
+	private static final float HEIGHT = 1000;
+	private static final int DIMENSIONS = 500;
+	private static final int RECORDS = 2000;
+
+	private final long seed;
+	private final int clusters;
+	private final int iterationsPerStep;
+	private final int maxSteps;
+
+	/**
+	 * the synthetic input
+	 */
+	private OverlapGraph graph;
+	private final List<BitSet> dims = new ArrayList<>();
+	private final List<BitSet> recs = new ArrayList<>();
+
+	public HeadlessLayoutRunner(long seed, int clusters, int iterationsPerStep, int maxSteps) {
+		this.seed = seed;
+		this.clusters = clusters;
+		this.iterationsPerStep = iterationsPerStep;
+		this.maxSteps = maxSteps;
+		createClusters();
+	}
+
+	/**
+	 * creates random clusters and their overlap graph
+	 */
+	private void createClusters() {
+		Random r = new Random(seed);
+		for (int i = 0; i < clusters; ++i) {
+			dims.add(randomMembers(r, DIMENSIONS, 5 + r.nextInt(45)));
+			recs.add(randomMembers(r, RECORDS, 10 + r.nextInt(190)));
+		}
+
+		int[] offsets = new int[clusters + 1];
+		List<int[]> edges = new ArrayList<>();
+		for (int i = 0; i < clusters; ++i) {
+			offsets[i] = edges.size();
+			for (int j = 0; j < clusters; ++j) {
+				if (i == j)
+					continue;
+				int dim = intersection(dims.get(i), dims.get(j));
+				int rec = intersection(recs.get(i), recs.get(j));
+				if (dim > 0 || rec > 0)
+					edges.add(new int[] { j, dim, rec });
+			}
+		}
+		offsets[clusters] = edges.size();
+		final int m = edges.size();
+		int[] neighbors = new int[m];
+		int[] dimOverlaps = new int[m];
+		int[] recOverlaps = new int[m];
+		for (int k = 0; k < m; ++k) {
+			neighbors[k] = edges.get(k)[0];
+			dimOverlaps[k] = edges.get(k)[1];
+			recOverlaps[k] = edges.get(k)[2];
+		}
+		graph = OverlapGraph.of(offsets, neighbors, dimOverlaps, recOverlaps);
+	}
+
+	private static BitSet randomMembers(Random r, int total, int count) {
+		BitSet b = new BitSet(total);
+		while (b.cardinality() < count)
+			b.set(r.nextInt(total));
+		return b;
+	}
+
+	private static int intersection(BitSet a, BitSet b) {
+		BitSet t = (BitSet) a.clone();
+		t.and(b);
+		return t.cardinality();
+	}
+
+	/**
+	 * @return fresh bodies of the synthetic clusters and a toolbar, in their initial state
+	 */
+	private ForcedBodies createBodies() {
+		ForcedBodies bodies = new ForcedBodies();
+		bodies.clear(graph, true, true);
+		for (int i = 0; i < clusters; ++i) {
+			final int dimSize = dims.get(i).cardinality();
+			final int recSize = recs.get(i).cardinality();
+			int dimTotal = 0, recTotal = 0;
+			for (int k = graph.start(i); k < graph.end(i); ++k) {
+				dimTotal += graph.dimOverlap(k);
+				recTotal += graph.recOverlap(k);
+			}
+			final float w = Math.max(20, Math.min(200, dimSize * 3));
+			final float h = Math.max(20, Math.min(200, recSize * 0.5f));
+			bodies.add(null, ForcedBodies.FLAG_VISIBLE | ForcedBody.FLAG_INITIAL, 0, 0, w, h, i, dimSize, recSize,
+					dimTotal, recTotal);
+		}
+		bodies.updateNeighbors();
+		bodies.addToolBar(null, ForcedBodies.FLAG_VISIBLE, WIDTH - 200, 0, 200, 300);
+		return bodies;
+	}
+
+	/**
+	 * runs the given layout till it converges or the max number of steps is reached
+	 */
+	public Result run(AForceBasedLayoutTuned layout) {
+		layout.setSeed(seed);
+		final ForcedBodies bodies = createBodies();
+		final IterationScheduler scheduler = IterationScheduler.fixed(iterationsPerStep);
+
+		int steps = 0;
+		int iterations = 0;
+		boolean anotherRound = true;
+		final long start = System.nanoTime();
+		while (anotherRound && steps < maxSteps) {
+			anotherRound = layout.step(bodies, scheduler, steps == 0, WIDTH, HEIGHT);
+			bodies.restart();
+			iterations += scheduler.getIterationsDone();
+			steps++;
+		}
+		final long duration = System.nanoTime() - start;
+
+		Result r = new Result(layout.getClass().getSimpleName());
+		r.steps = steps;
+		r.converged = !anotherRound;
+		r.iterations = iterations;
+		r.energy = scheduler.getEnergy();
+		r.overlaps = countOverlaps(bodies);
+		r.msPerIteration = iterations == 0 ? 0 : duration / 1e6 / iterations;
+		r.checksum = checksum(bodies);
+		return r;
+	}
+
+	/**
+	 * @return the number of pairs of visible clusters whose elements intersect
+	 */
+	private static int countOverlaps(ForcedBodies bodies) {
+		UniformGrid grid = new UniformGrid(100);
+		final int size = bodies.size();
+		for (int i = 0; i < size; ++i) {
+			if (bodies.isVisible(i) && !bodies.isInvalid(i))
+				grid.update(i, bodies.centerX[i] - bodies.elemWidth[i] * 0.5, bodies.centerY[i]
+						- bodies.elemHeight[i] * 0.5, bodies.elemWidth[i], bodies.elemHeight[i]);
+		}
+		int overlaps = 0;
+		for (int i = 0; i < size; ++i) {
+			if (!grid.contains(i))
+				continue;
+			final int hits = grid.query(bodies.centerX[i] - bodies.elemWidth[i] * 0.5, bodies.centerY[i]
+					- bodies.elemHeight[i] * 0.5, bodies.elemWidth[i], bodies.elemHeight[i]);
+			for (int k = 0; k < hits; ++k)
+				if (grid.getHit(k) > i) // every pair once
+					overlaps++;
+		}
+		return overlaps;
+	}
+
+	private static long checksum(ForcedBodies bodies) {
+		long r = 1;
+		for (int i = 0; i < bodies.size(); ++i) {
+			r = r * 31 + Double.doubleToLongBits(bodies.centerX[i]);
+			r = r * 31 + Double.doubleToLongBits(bodies.centerY[i]);
+		}
+		return r;
+	}
+
+	public static final class Result {
+		private final String layout;
+		private int steps;
+		private boolean converged;
+		private int iterations;
+		private double energy;
+		private int overlaps;
+		private double msPerIteration;
+		private long checksum;
+
+		Result(String layout) {
+			this.layout = layout;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ENGLISH, "%-24s %6d %9s %10d %12.4f %8d %10.4f %016x", layout, steps,
+					converged, iterations, energy, overlaps, msPerIteration, checksum);
+		}
+	}
+
+	public static void main(String[] args) {
+		final long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+		final int clusters = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		final int iterationsPerStep = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		final int maxSteps = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+
+		HeadlessLayoutRunner runner = new HeadlessLayoutRunner(seed, clusters, iterationsPerStep, maxSteps);
+		System.out.println(String.format(Locale.ENGLISH, "%-24s %6s %9s %10s %12s %8s %10s %16s", "layout", "steps",
+				"converged", "iterations", "energy", "overlaps", "ms/iter", "checksum"));
+		// ForceBasedLayout works on the live cluster elements and can't run without a view
+		System.out.println(runner.run(new ForceBasedLayoutTuned(null)));
+		System.out.println(runner.run(new ForceBasedLayoutTuned2(null)));
+	}
+}
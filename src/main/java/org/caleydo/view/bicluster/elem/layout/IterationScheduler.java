@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.elem.layout;
+
+/**
+ * decides how many iterations a simulation step of a force based layout runs and whether another step is needed.
+ *
+ * the number of iterations is derived from the measured costs of an iteration, such that a step fits into a time
+ * budget. A step stops early as soon as the system reaches its equilibrium, i.e. the mean squared displacement of an
+ * iteration is below a threshold. If the energy doesn't decrease from step to step, the system oscillates and is
+ * cooled down, which results in a stronger damping and finally a stop.
+ *
+ * used by a single simulation step at a time
+ *
+ * @author Samuel Gratzl
+ *
+ */
+final class IterationScheduler {
+	private static final int INITIAL_ITERATIONS = 20;
+	private static final int MAX_ITERATIONS = 500;
+	/**
+	 * mean squared displacement of a body per iteration below which the system is in its equilibrium, i.e. half a pixel
+	 */
+	private static final double EQUILIBRIUM = 0.5 * 0.5;
+	/**
+	 * energy ratio between two steps, above which the system doesn't converge
+	 */
+	private static final double MIN_PROGRESS = 0.95;
+	private static final double COOLING = 0.9;
+	private static final double MIN_TEMPERATURE = 0.02;
+
+	private final long budgetNs;
+	/**
+	 * fixed number of iterations per step or -1 if derived from the budget
+	 */
+	private final int fixedIterations;
+
+	/**
+	 * exponential moving average of the duration of a single iteration
+	 */
+	private double nsPerIteration = Double.NaN;
+	private double temperature = 1;
+	private double lastStepEnergy = Double.POSITIVE_INFINITY;
+
+	/**
+	 * state of the current step
+	 */
+	private long start;
+	private int planned;
+	private int done;
+	private int movable;
+	private double energy;
+	private boolean equilibrium;
+
+	/**
+	 * @param budgetMs
+	 *            time budget of a simulation step in ms
+	 */
+	public IterationScheduler(int budgetMs) {
+		this(budgetMs * 1000000L, -1);
+	}
+
+	private IterationScheduler(long budgetNs, int fixedIterations) {
+		this.budgetNs = budgetNs;
+		this.fixedIterations = fixedIterations;
+	}
+
+	/**
+	 * @return a scheduler that runs a fixed number of iterations per step independent of the time needed, such that
+	 *         the result is reproducible
+	 */
+	public static IterationScheduler fixed(int iterations) {
+		return new IterationScheduler(Long.MAX_VALUE, iterations);
+	}
+
+	/**
+	 * starts a new period of activity, e.g. after the input changed
+	 */
+	public void reset() {
+		temperature = 1;
+		lastStepEnergy = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * starts a new simulation step
+	 *
+	 * @param initial
+	 *            whether it is the initial layout
+	 * @param movable
+	 *            the number of bodies that can move
+	 */
+	public void begin(boolean initial, int movable) {
+		this.start = System.nanoTime();
+		this.done = 0;
+		this.movable = Math.max(1, movable);
+		this.energy = 0;
+		this.equilibrium = false;
+		if (fixedIterations > 0) {
+			this.planned = fixedIterations;
+			return;
+		}
+		int iterations = Double.isNaN(nsPerIteration) ? INITIAL_ITERATIONS : (int) (budgetNs / Math.max(1,
+				nsPerIteration));
+		if (initial)
+			iterations = Math.max(iterations, INITIAL_ITERATIONS);
+		this.planned = Math.max(1, Math.min(MAX_ITERATIONS, iterations));
+	}
+
+	/**
+	 * @return the number of iterations planned for the current step
+	 */
+	public int getIterations() {
+		return planned;
+	}
+
+	/**
+	 * @return the number of iterations done in the current or last step
+	 */
+	public int getIterationsDone() {
+		return done;
+	}
+
+	/**
+	 * @return the energy of the last iteration, see {@link #iterationDone(double)}
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * @return the mean duration of an iteration in ns or NaN if unknown
+	 */
+	public double getNsPerIteration() {
+		return nsPerIteration;
+	}
+
+	/**
+	 * reports a finished iteration
+	 *
+	 * @param energy
+	 *            the sum of the squared displacements of the bodies in this iteration
+	 * @return whether to continue with the next iteration
+	 */
+	public boolean iterationDone(double energy) {
+		done++;
+		this.energy = energy;
+		if (energy / movable < EQUILIBRIUM) {
+			equilibrium = true;
+			return false;
+		}
+		return done < planned && (System.nanoTime() - start) < budgetNs;
+	}
+
+	/**
+	 * finishes the current step
+	 *
+	 * @return whether the system is not yet stable, i.e. another step is needed
+	 */
+	public boolean end() {
+		if (done > 0) {
+			final double ns = (System.nanoTime() - start) / (double) done;
+			nsPerIteration = Double.isNaN(nsPerIteration) ? ns : nsPerIteration * 0.7 + ns * 0.3;
+		}
+		if (equilibrium)
+			return false;
+		if (energy > lastStepEnergy * MIN_PROGRESS) // not converging
+			temperature *= COOLING;
+		lastStepEnergy = energy;
+		return temperature > MIN_TEMPERATURE;
+	}
+
+	/**
+	 * @return the damping of the movement of the current step, between 1 (none) and 0 (full)
+	 */
+	public double getDamping() {
+		return temperature;
+	}
+}
@@ -5,82 +5,296 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.elem.layout;
 
-import java.util.List;
+import java.util.Arrays;
 
-import org.apache.commons.math.linear.EigenDecompositionImpl;
-import org.apache.commons.math.linear.MatrixUtils;
-import org.apache.commons.math.linear.RealMatrix;
-import org.apache.commons.math.linear.RealVector;
-import org.caleydo.core.view.opengl.layout2.layout.IGLLayout2;
 import org.caleydo.core.view.opengl.layout2.layout.IGLLayoutElement;
-import org.caleydo.view.bicluster.elem.ClusterElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
 
 /**
+ * classical multidimensional scaling of the cluster bodies based on their overlaps, used as initial layout of the
+ * force based layout.
+ *
+ * the similarity of two clusters is their overlap c_ij and c_ii their size, such that the squared distance is
+ * d_ij^2 = c_ii + c_jj - 2 c_ij. The double-centered matrix B = -1/2 J D^2 J simplifies to J C J, where C is the
+ * sparse overlap matrix. Thus B is never materialized, the top two eigenpairs are computed by power iteration using
+ * sparse matrix vector products only.
+ *
+ * the embedding is cached until the overlaps, i.e. the {@link OverlapGraph}, the enabled bands or the clusters change
+ *
  * @author Samuel Gratzl
  *
  */
-public class MDSLayout implements IGLLayout2 {
-	@Override
-	public boolean doLayout(List<? extends IGLLayoutElement> children, float w_p, float h_p, IGLLayoutElement parent,
-			int deltaTimeMs) {
-		final int n = children.size();
-		RealMatrix a = MatrixUtils.createRealMatrix(n, n);
-
-		// Sind als Startwerte anstatt Distanzen Ähnlichkeitsmaße c_{ij} zwischen Objekten gegeben, so lassen sich diese
-		// durch die Transformation
-		//
-		// d_{ij} = \sqrt{c_{ii}+c_{jj}-2c_{ij}}
-		//
-		// in Distanzen überführen.
+final class MDSLayout {
+	private static final int MAX_ITERATIONS = 200;
+	private static final double EPSILON = 1e-6;
 
-		for (int i = 0; i < n; ++i) {
-			ClusterElement ci = (ClusterElement) children.get(i).asElement();
-			int c_ii = ci.getDimSize() + ci.getRecSize();
+	/**
+	 * cache key
+	 */
+	private OverlapGraph graph;
+	private boolean dimBands;
+	private boolean recBands;
+	private IGLLayoutElement[] elems = new IGLLayoutElement[0];
+	private int size = -1;
+
+	/**
+	 * the embedding of body i or NaN if none
+	 */
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private boolean valid = false;
 
-			for (int j = i + 1; j < n; ++j) {
-				ClusterElement cj = (ClusterElement) children.get(j).asElement();
-				int recOverlap = ci.getRecOverlap(cj);
-				int dimOverlap = ci.getDimOverlap(cj);
+	/**
+	 * the transformation of the last {@link #place(ForcedBodies, float, float)}
+	 */
+	private double scaleX = Double.NaN, scaleY, shiftX, shiftY;
 
-				int c_jj = cj.getDimSize() + cj.getRecSize();
-				int c_ij = recOverlap + dimOverlap;
+	/**
+	 * sparse symmetric overlap matrix: diagonal and the edges (edgeA, edgeB) with the weight edgeW
+	 */
+	private double[] diagonal = new double[0];
+	private int[] edgeA = new int[0];
+	private int[] edgeB = new int[0];
+	private double[] edgeW = new double[0];
+	private int edges;
 
-				double d_ij = Math.sqrt(c_ii + c_jj - 2 * c_ij);
+	/**
+	 * power iteration buffers
+	 */
+	private double[] v1 = new double[0], v2 = new double[0], tmp = new double[0], prev = new double[0];
+
+	/**
+	 * places all visible cluster bodies according to the embedding, scaled to the given area
+	 *
+	 * @return whether a valid embedding exists, i.e. the bodies were placed
+	 */
+	public boolean place(ForcedBodies bodies, float w, float h) {
+		update(bodies);
+		if (!valid)
+			return false;
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double rX = 0, rY = 0;
+		for (int i = 0; i < size; ++i) {
+			if (!bodies.isVisible(i) || Double.isNaN(x[i]))
+				continue;
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
+			rX = Math.max(rX, bodies.radiusX[i]);
+			rY = Math.max(rY, bodies.radiusY[i]);
+		}
+		if (minX > maxX) // nothing visible
+			return false;
+		// fit the bounding box of the centers into the area, keeping a margin for the bodies itself
+		final double availW = Math.max(w - 2 * rX, 1);
+		final double availH = Math.max(h - 2 * rY, 1);
+		scaleX = maxX - minX > EPSILON ? availW / (maxX - minX) : 0;
+		scaleY = maxY - minY > EPSILON ? availH / (maxY - minY) : 0;
+		shiftX = scaleX > 0 ? rX - minX * scaleX : w * 0.5;
+		shiftY = scaleY > 0 ? rY - minY * scaleY : h * 0.5;
+
+		for (int i = 0; i < size; ++i) {
+			if (bodies.isVisible(i) && !Double.isNaN(x[i]))
+				bodies.setLocation(i, x[i] * scaleX + shiftX, y[i] * scaleY + shiftY);
+		}
+		return true;
+	}
 
-				a.setEntry(i, j, d_ij);
-				a.setEntry(j, i, d_ij);
+	/**
+	 * places a single body using the transformation of the last {@link #place(ForcedBodies, float, float)}
+	 *
+	 * @return whether the body was placed
+	 */
+	public boolean place(ForcedBodies bodies, int i) {
+		if (Double.isNaN(scaleX) || i >= bodies.size())
+			return false;
+		update(bodies);
+		if (!valid || Double.isNaN(x[i]))
+			return false;
+		bodies.setLocation(i, x[i] * scaleX + shiftX, y[i] * scaleY + shiftY);
+		return true;
+	}
+
+	/**
+	 * recomputes the embedding if the input changed
+	 */
+	private void update(ForcedBodies bodies) {
+		if (!isDirty(bodies))
+			return;
+		this.graph = bodies.getOverlapGraph();
+		this.dimBands = bodies.isDimBands();
+		this.recBands = bodies.isRecBands();
+		this.size = bodies.size();
+		if (elems.length < size)
+			elems = new IGLLayoutElement[bodies.elems.length];
+		Arrays.fill(elems, null);
+		System.arraycopy(bodies.elems, 0, elems, 0, size);
+		this.scaleX = Double.NaN;
+		this.valid = compute(bodies);
+	}
+
+	private boolean isDirty(ForcedBodies bodies) {
+		if (graph != bodies.getOverlapGraph() || dimBands != bodies.isDimBands() || recBands != bodies.isRecBands()
+				|| size != bodies.size())
+			return true;
+		for (int i = 0; i < size; ++i)
+			if (elems[i] != bodies.elems[i])
+				return true;
+		return false;
+	}
+
+	private boolean compute(ForcedBodies bodies) {
+		final int n = size;
+		ensureCapacity(n);
+		if (n < 2)
+			return false;
+
+		// the sparse overlap matrix
+		edges = 0;
+		for (int i = 0; i < n; ++i) {
+			diagonal[i] = 0;
+			if (bodies.graphIndex[i] < 0)
+				continue;
+			if (dimBands)
+				diagonal[i] += bodies.dimSizes[i];
+			if (recBands)
+				diagonal[i] += bodies.recSizes[i];
+			for (int k = bodies.neighborsStart(i); k < bodies.neighborsEnd(i); ++k) {
+				final int j = bodies.neighbor(k);
+				addEdge(i, j, bodies.getOverlap(i, j));
 			}
 		}
 
-		//#1. negative squared dissimilarity matrix Q
-		//q = as.matrix( -0.5 * d ** 2 )
-		RealMatrix q = a.copy();
-		for(int i = 0; i < n; ++i) {
-			q.getRowVector(i).mapPowToSelf(2);
+		final double lambda1 = powerIteration(v1, null);
+		if (lambda1 <= EPSILON) { // nothing to embed
+			Arrays.fill(x, 0, n, Double.NaN);
+			Arrays.fill(y, 0, n, Double.NaN);
+			return false;
 		}
-		q = q.scalarMultiply(-0.5);
-
-		//#2. centering matrix H
-		//h = diag(n) - 1/n * 1
-		RealMatrix h = MatrixUtils.createRealMatrix(n, n);
-		for(int i = 0; i < n; ++i)
-			h.setEntry(i,i, n - 1./n * 1);
-		//#3. double-center matrix B
-		//b = h %*% q %*% h
-		RealMatrix b = h.copy().multiply(q).multiply(h);
-		// #4. eigen decomposition of B
-		// eig = eigen(b)
-		EigenDecompositionImpl eig = new EigenDecompositionImpl(b, 0);
-		// #5. use top k values/vectors to compute projected points
-		// points = eig$vectors[,1:k] %*% diag(sqrt(eig$values[1:k]))
-		for(int i = 0; i < n; ++i) {
-			RealVector v = eig.getEigenvector(i).getSubVector(0, 2);
-			double x = v.getEntry(0)*eig.getRealEigenvalue(0);
-			double y = v.getEntry(1)*eig.getRealEigenvalue(1);
-			IGLLayoutElement child = children.get(i);
-			child.setLocation((float) x, (float) y);
+		final double lambda2 = powerIteration(v2, v1);
+		final double s1 = Math.sqrt(lambda1);
+		final double s2 = lambda2 > EPSILON ? Math.sqrt(lambda2) : 0;
+		for (int i = 0; i < n; ++i) {
+			if (bodies.graphIndex[i] < 0) {
+				x[i] = y[i] = Double.NaN;
+			} else {
+				x[i] = v1[i] * s1;
+				y[i] = v2[i] * s2;
+			}
 		}
+		return true;
+	}
 
-		return false;
+	private void addEdge(int a, int b, double w) {
+		if (w <= 0)
+			return;
+		if (edges == edgeA.length) {
+			final int l = Math.max(16, edges * 2);
+			edgeA = Arrays.copyOf(edgeA, l);
+			edgeB = Arrays.copyOf(edgeB, l);
+			edgeW = Arrays.copyOf(edgeW, l);
+		}
+		edgeA[edges] = a;
+		edgeB[edges] = b;
+		edgeW[edges] = w;
+		edges++;
+	}
+
+	/**
+	 * computes the dominant eigenvector of B orthogonal to the given one
+	 *
+	 * @param v
+	 *            the result, normalized
+	 * @param orthogonal
+	 *            the already computed eigenvector or null
+	 * @return the eigenvalue
+	 */
+	private double powerIteration(double[] v, double[] orthogonal) {
+		final int n = size;
+		// deterministic pseudo random start vector
+		for (int i = 0; i < n; ++i)
+			v[i] = ((i * 2654435761L) & 0xffff) / 65536. - 0.5;
+		double lambda = normalize(v, orthogonal);
+		if (lambda <= 0)
+			return 0;
+		for (int it = 0; it < MAX_ITERATIONS; ++it) {
+			System.arraycopy(v, 0, prev, 0, n);
+			multiply(prev, v);
+			lambda = normalize(v, orthogonal);
+			if (lambda <= EPSILON)
+				return 0;
+			double delta = 0;
+			for (int i = 0; i < n; ++i)
+				delta += (v[i] - prev[i]) * (v[i] - prev[i]);
+			if (delta < EPSILON * EPSILON)
+				break;
+		}
+		return lambda;
+	}
+
+	/**
+	 * removes the component of the orthogonal vector and normalizes the vector
+	 *
+	 * @return the length before the normalization
+	 */
+	private double normalize(double[] v, double[] orthogonal) {
+		final int n = size;
+		if (orthogonal != null) {
+			double dot = 0;
+			for (int i = 0; i < n; ++i)
+				dot += v[i] * orthogonal[i];
+			for (int i = 0; i < n; ++i)
+				v[i] -= dot * orthogonal[i];
+		}
+		double l = 0;
+		for (int i = 0; i < n; ++i)
+			l += v[i] * v[i];
+		l = Math.sqrt(l);
+		if (l <= 0)
+			return 0;
+		for (int i = 0; i < n; ++i)
+			v[i] /= l;
+		return l;
+	}
+
+	/**
+	 * out = J C J v
+	 */
+	private void multiply(double[] v, double[] out) {
+		final int n = size;
+		center(v, tmp);
+		for (int i = 0; i < n; ++i)
+			out[i] = diagonal[i] * tmp[i];
+		for (int e = 0; e < edges; ++e) {
+			final int a = edgeA[e];
+			final int b = edgeB[e];
+			out[a] += edgeW[e] * tmp[b];
+			out[b] += edgeW[e] * tmp[a];
+		}
+		center(out, out);
+	}
+
+	private void center(double[] v, double[] out) {
+		final int n = size;
+		double mean = 0;
+		for (int i = 0; i < n; ++i)
+			mean += v[i];
+		mean /= n;
+		for (int i = 0; i < n; ++i)
+			out[i] = v[i] - mean;
+	}
+
+	private void ensureCapacity(int n) {
+		if (x.length >= n)
+			return;
+		x = new double[n];
+		y = new double[n];
+		diagonal = new double[n];
+		v1 = new double[n];
+		v2 = new double[n];
+		tmp = new double[n];
+		prev = new double[n];
 	}
 }
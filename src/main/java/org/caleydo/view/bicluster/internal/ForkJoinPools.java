@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ ******************************************************************************/
+package org.caleydo.view.bicluster.internal;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.caleydo.view.bicluster.internal.prefs.MyPreferences;
+
+/**
+ * shared {@link ForkJoinPool} for all data parallel computations of this plugin, sized according to
+ * {@link MyPreferences#getParallelism()}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class ForkJoinPools {
+	private static ForkJoinPool pool;
+
+	private ForkJoinPools() {
+
+	}
+
+	/**
+	 * @return the shared pool, recreated if the parallelism preference changed
+	 */
+	public static synchronized ForkJoinPool get() {
+		final int parallelism = MyPreferences.getParallelism();
+		if (pool != null && pool.getParallelism() == parallelism)
+			return pool;
+		if (pool != null)
+			pool.shutdown(); // running tasks will still be finished
+		pool = new ForkJoinPool(parallelism);
+		return pool;
+	}
+
+	/**
+	 * shutdown the shared pool if any
+	 */
+	public static synchronized void shutdown() {
+		if (pool == null)
+			return;
+		pool.shutdownNow();
+		pool = null;
+	}
+}
@@ -5,14 +5,16 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.internal.loading;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.caleydo.core.data.collection.EDataClass;
@@ -458,9 +460,9 @@ public class BiClusterStartupAddon implements IStartupAddon {
 			List<List<String>> data = parseFile(inputFile);
 			widget = new CategoricalDataPropertiesWidget(parent);
 			if (old != null)
-				widget.updateCategories(data, 1, old);
+				widget.updateCategories(data, 0, old);
 			else
-				widget.updateCategories(data, 1);
+				widget.updateCategories(data, 0);
 
 			return parent;
 		}
@@ -472,17 +474,30 @@ public class BiClusterStartupAddon implements IStartupAddon {
 		}
 
 		/**
-		 * @param inputFile2
-		 * @return
+		 * reads just the category column of the given file
+		 *
+		 * @return per row a single element list with the category of the row
 		 */
 		private List<List<String>> parseFile(File f) {
 			if (!f.exists() || !f.isFile())
 				return Collections.emptyList();
 			List<List<String>> r = new ArrayList<>();
-			try {
-				List<String> lines = Files.readAllLines(f.toPath(), Charset.forName("UTF-8"));
-				for (String line : lines.subList(1, lines.size())) {
-					r.add(Arrays.asList(line.split("\t")));
+			// equal categories share a single string
+			Map<String, String> categories = new HashMap<>();
+			try (BufferedReader reader = Files.newBufferedReader(f.toPath(), Charset.forName("UTF-8"))) {
+				String line = reader.readLine(); // skip header
+				while ((line = reader.readLine()) != null) {
+					final int start = line.indexOf('\t');
+					if (start < 0)
+						continue;
+					int end = line.indexOf('\t', start + 1);
+					String category = line.substring(start + 1, end < 0 ? line.length() : end);
+					String shared = categories.get(category);
+					if (shared == null) {
+						categories.put(category, category);
+						shared = category;
+					}
+					r.add(Collections.singletonList(shared));
 				}
 			} catch (IOException e) {
 				ErrorDialog.openError(getParentShell(), "Can't load file", "Can't load file: " + f, new Status(
@@ -5,8 +5,10 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.internal.loading;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.caleydo.core.data.collection.table.NumericalTable;
 import org.caleydo.core.data.datadomain.ATableBasedDataDomain;
@@ -17,7 +19,6 @@ import org.caleydo.core.startup.IStartupProcedure;
 import org.caleydo.core.util.logging.Logger;
 import org.caleydo.view.bicluster.GLBiCluster;
 import org.caleydo.view.bicluster.RcpGLBiClusterView;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PartInitException;
 import org.eclipse.ui.PlatformUI;
@@ -38,10 +39,17 @@ final class LoadBiClusterStartupProcedure implements IStartupProcedure {
 
 	@Override
 	public void run() {
-
-		// 1. load data
-		for (DataSetDescription ri : datasets)
-			loaded.add(DataLoader.loadData(ri, new NullProgressMonitor()));
+		// 1. load data: one after the other, as the datasets share and register the same id types
+		for (DataSetDescription desc : datasets) {
+			final long start = System.nanoTime();
+			final long bytes = new File(desc.getDataSourcePath()).length();
+			ATableBasedDataDomain d = DataLoader.loadData(desc, new LoggingProgressMonitor(desc.getDataSetName(),
+					bytes));
+			log.info(String.format("loaded %s in %d ms", desc.getDataSetName(),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+			if (d != null)
+				loaded.add(d);
+		}
 	}
 
 	@Override
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.internal.loading;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.caleydo.core.util.logging.Logger;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * {@link IProgressMonitor} that reports the progress and the throughput in bytes per second of loading a file to the
+ * log.
+ *
+ * the throughput is derived from the size of the file and the fraction of the work done, thus the work units of the
+ * task don't have to be bytes
+ *
+ * @author Samuel Gratzl
+ *
+ */
+class LoggingProgressMonitor extends NullProgressMonitor {
+	private static final Logger log = Logger.create(LoggingProgressMonitor.class);
+	/**
+	 * report every X percent
+	 */
+	private static final int REPORT_STEP = 10;
+
+	private final String name;
+	private final long bytes;
+	private long start;
+	private int totalWork = IProgressMonitor.UNKNOWN;
+	private long worked = 0;
+	private int lastReported = 0;
+
+	/**
+	 * @param bytes
+	 *            the size of the loaded file
+	 */
+	public LoggingProgressMonitor(String name, long bytes) {
+		this.name = name;
+		this.bytes = bytes;
+	}
+
+	@Override
+	public void beginTask(String taskName, int totalWork) {
+		this.start = System.nanoTime();
+		this.totalWork = totalWork;
+		this.worked = 0;
+		this.lastReported = 0;
+		log.info(name + ": " + taskName);
+	}
+
+	@Override
+	public void worked(int work) {
+		worked += work;
+		if (totalWork <= 0)
+			return;
+		int percent = (int) (worked * 100 / totalWork);
+		if (percent < lastReported + REPORT_STEP)
+			return;
+		lastReported = percent;
+		final double done = bytes * (double) worked / totalWork;
+		log.info(String.format(Locale.ENGLISH, "%s: %d%% (%.1f MB/s)", name, percent, done / elapsedSeconds() / 1e6));
+	}
+
+	@Override
+	public void done() {
+		final long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		log.info(String.format(Locale.ENGLISH, "%s: done in %d ms (%.1f MB/s)", name, ms, bytes / elapsedSeconds()
+				/ 1e6));
+	}
+
+	private double elapsedSeconds() {
+		return Math.max(1, System.nanoTime() - start) / 1e9;
+	}
+}
@@ -54,6 +54,10 @@ public class MyPreferencePage extends FieldEditorPreferencePage implements IWork
 				1, 10));
 		addField(new ScaleFieldEditor2("view.bicluster.go.maxp", "Show GO Terms with a p-value of at least", parent, 0,
 				100, 1, 10, ScaleFieldEditor2.PERCENT_FORMATTER));
+
+		addGroup(parent, "Performance");
+		addField(new SpinnerFieldEditor("view.bicluster.parallelism", "Number of worker threads (0 = all cores)",
+				parent, 0, 256, 1, 4));
 	}
 
 	/**
@@ -46,6 +46,8 @@ public class MyPreferences extends AbstractPreferenceInitializer {
 
 		store.setDefault("view.bicluster.go.maxgos", 5);
 		store.setDefault("view.bicluster.go.maxp", 100);
+
+		store.setDefault("view.bicluster.parallelism", 0);
 	}
 
 	public static float getDimThreshold() {
@@ -115,4 +117,14 @@ public class MyPreferences extends AbstractPreferenceInitializer {
 	public static int getMaxNumberofGOs() {
 		return prefs().getInt("view.bicluster.go.maxgos");
 	}
+
+	/**
+	 * @return the number of worker threads to use for parallel computations, 0 = number of available processors
+	 */
+	public static int getParallelism() {
+		int p = Activator.getDefault() == null ? 0 : prefs().getInt("view.bicluster.parallelism");
+		if (p <= 0)
+			p = Runtime.getRuntime().availableProcessors();
+		return p;
+	}
 }
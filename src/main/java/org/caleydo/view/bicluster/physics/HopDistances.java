@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.physics;
+
+import java.util.concurrent.RecursiveAction;
+
+import org.caleydo.view.bicluster.elem.ClusterElement;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
+import org.caleydo.view.bicluster.internal.ForkJoinPools;
+
+/**
+ * precomputed all pairs hop distances of an {@link OverlapGraph}, such that distance queries are simple lookups
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class HopDistances {
+	/**
+	 * number of rows computed by a single task
+	 */
+	private static final int ROWS_PER_TASK = 16;
+
+	private final OverlapGraph graph;
+	private final int n;
+	/**
+	 * row major n x n matrix
+	 */
+	private final short[] distances;
+
+	private HopDistances(OverlapGraph graph, short[] distances) {
+		this.graph = graph;
+		this.n = graph.size();
+		this.distances = distances;
+	}
+
+	/**
+	 * computes the distance matrix by running a breath first search from every node in parallel
+	 *
+	 * @param graph
+	 * @param recBands
+	 * @param dimBands
+	 * @return
+	 */
+	public static HopDistances compute(final OverlapGraph graph, final boolean recBands, final boolean dimBands) {
+		final int n = graph.size();
+		final short[] distances = new short[n * n];
+		final boolean[] passable = MyDijkstra.passable(graph);
+		ForkJoinPools.get().invoke(new Rows(graph, passable, recBands, dimBands, distances, 0, n));
+		return new HopDistances(graph, distances);
+	}
+
+	/**
+	 * @return the graph these distances are based on
+	 */
+	public OverlapGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * same semantics as {@link MyDijkstra#minDistance}
+	 *
+	 * @param source
+	 * @param target
+	 * @param maxDistance
+	 * @return the distance or maxDistance +1 for invalid or not existing
+	 */
+	public int minDistance(ClusterElement source, ClusterElement target, int maxDistance) {
+		if (source == target)
+			return 0;
+		final int invalid = Math.min(maxDistance + 1, Integer.MAX_VALUE);
+		if (maxDistance <= 0)
+			return invalid;
+		final int s = graph.indexOf(source);
+		final int t = graph.indexOf(target);
+		if (s < 0 || t < 0)
+			return invalid;
+		return Math.min(distances[s * n + t], invalid);
+	}
+
+	private static final class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final OverlapGraph graph;
+		private final boolean[] passable;
+		private final boolean recBands;
+		private final boolean dimBands;
+		private final short[] distances;
+		private final int from;
+		private final int to;
+
+		public Rows(OverlapGraph graph, boolean[] passable, boolean recBands, boolean dimBands, short[] distances,
+				int from, int to) {
+			this.graph = graph;
+			this.passable = passable;
+			this.recBands = recBands;
+			this.dimBands = dimBands;
+			this.distances = distances;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > ROWS_PER_TASK) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new Rows(graph, passable, recBands, dimBands, distances, from, mid), new Rows(graph,
+						passable, recBands, dimBands, distances, mid, to));
+				return;
+			}
+			final int n = graph.size();
+			final int[] queue = new int[n];
+			for (int s = from; s < to; ++s)
+				MyDijkstra.distances(graph, s, passable, recBands, dimBands, distances, s * n, queue);
+		}
+	}
+}
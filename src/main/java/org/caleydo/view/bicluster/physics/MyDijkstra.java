@@ -5,23 +5,26 @@
  *******************************************************************************/
 package org.caleydo.view.bicluster.physics;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Set;
+import java.util.Arrays;
 
-import org.caleydo.core.data.collection.EDimension;
 import org.caleydo.view.bicluster.elem.ClusterElement;
-
-import com.google.common.collect.Sets;
+import org.caleydo.view.bicluster.elem.OverlapGraph;
 
 /**
  * @author Samuel Gratzl
  *
  */
 public class MyDijkstra {
+	/**
+	 * marker for not reachable nodes
+	 */
+	public static final short UNREACHABLE = Short.MAX_VALUE;
+
 	/**
 	 * compute the min distance between the clusters
 	 *
+	 * @param graph
+	 *            the overlap graph to use
 	 * @param source
 	 * @param target
 	 * @param maxDistance
@@ -29,57 +32,72 @@ public class MyDijkstra {
 	 * @param dimBands
 	 * @return the distance or maxDistance +1 for invalid or not existing
 	 */
-	public static int minDistance(final ClusterElement source, final ClusterElement target, int maxDistance,
-			boolean recBands, boolean dimBands) {
+	public static int minDistance(OverlapGraph graph, final ClusterElement source, final ClusterElement target,
+			int maxDistance, boolean recBands, boolean dimBands) {
 		if (source == target)
 			return 0;
 		final int invalid = Math.min(maxDistance + 1, Integer.MAX_VALUE);
 		if (maxDistance <= 0)
 			return invalid;
-		if (hasNeighbor(source, target, recBands, dimBands))
-			return 1;
-		if (maxDistance < 2)
+		final int s = graph.indexOf(source);
+		final int t = graph.indexOf(target);
+		if (s < 0 || t < 0)
 			return invalid;
-		Set<ClusterElement> done = Sets.newIdentityHashSet();
-		Deque<Distanced> queue = new ArrayDeque<>(10);
-		queue.add(new Distanced(0, source));
-		done.add(source);
-		Distanced act;
-		while( (act = queue.pollFirst()) != null) {
-			if (hasNeighbor(act.elem, target, recBands, dimBands))
-				return act.distance + 1;
-			if (act.distance >= maxDistance) // stop here to add its neighors
-				continue;
-			if (dimBands)
-				addAll(done, queue, act.distance, act.elem.getOverlappingNeighbors(EDimension.DIMENSION));
-			if (recBands)
-				addAll(done, queue, act.distance, act.elem.getOverlappingNeighbors(EDimension.RECORD));
-		}
-		return invalid;
+		final int n = graph.size();
+		short[] distances = new short[n];
+		distances(graph, s, passable(graph), recBands, dimBands, distances, 0, new int[n]);
+		return Math.min(distances[t], invalid);
 	}
 
-	private static void addAll(Set<ClusterElement> done, Deque<Distanced> queue, int distance,
-			Iterable<ClusterElement> neighbors) {
-		for (ClusterElement neighbor : neighbors) {
-			if (!done.contains(neighbor) && neighbor.isVisible()) {
-				done.add(neighbor);
-				queue.add(new Distanced(distance + 1, neighbor));
-			}
-		}
+	/**
+	 * @param graph
+	 * @return for every node whether it can be used as an intermediate node of a path, i.e. whether it should be
+	 *         visible regardless of the current focus
+	 */
+	public static boolean[] passable(OverlapGraph graph) {
+		final int n = graph.size();
+		boolean[] r = new boolean[n];
+		for (int i = 0; i < n; ++i)
+			r[i] = graph.get(i).shouldBeVisible();
+		return r;
 	}
 
-	private static class Distanced {
-		final int distance;
-		final ClusterElement elem;
-
-		public Distanced(int distance, ClusterElement elem) {
-			this.distance = distance;
-			this.elem = elem;
+	/**
+	 * computes the hop distances from the given source to all nodes using a breath first search. Just passable nodes
+	 * are used as intermediate nodes, the source and the targets don't need to be passable
+	 *
+	 * @param graph
+	 * @param source
+	 *            the source node index
+	 * @param passable
+	 *            see {@link #passable(OverlapGraph)}
+	 * @param recBands
+	 * @param dimBands
+	 * @param target
+	 *            the target array, the distance to node i will be stored at offset + i, {@link #UNREACHABLE} if not
+	 *            reachable
+	 * @param offset
+	 * @param queue
+	 *            a buffer of at least the size of the graph
+	 */
+	public static void distances(OverlapGraph graph, int source, boolean[] passable, boolean recBands, boolean dimBands,
+			short[] target, int offset, int[] queue) {
+		final int n = graph.size();
+		Arrays.fill(target, offset, offset + n, UNREACHABLE);
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		target[offset + source] = 0;
+		while (head < tail) {
+			final int act = queue[head++];
+			final int next = Math.min(target[offset + act] + 1, UNREACHABLE - 1);
+			for (int k = graph.start(act); k < graph.end(act); ++k) {
+				final int neighbor = graph.neighbor(k);
+				if (target[offset + neighbor] != UNREACHABLE || !graph.isOverlapping(k, dimBands, recBands))
+					continue;
+				target[offset + neighbor] = (short) next;
+				if (passable[neighbor]) // just passable ones are used for further paths
+					queue[tail++] = neighbor;
+			}
 		}
 	}
-
-	private static boolean hasNeighbor(final ClusterElement source, final ClusterElement target, boolean recBands,
-			boolean dimBands) {
-		return (dimBands && source.getDimOverlap(target) > 0) || (recBands && source.getRecOverlap(target) > 0);
-	}
 }
@@ -6,6 +6,7 @@
 package org.caleydo.view.bicluster.physics;
 
 import java.awt.geom.Rectangle2D;
+import java.util.Random;
 
 import org.caleydo.view.bicluster.util.Vec2d;
 
@@ -16,6 +17,16 @@ import org.caleydo.view.bicluster.util.Vec2d;
 public class Physics {
 	private static final double ENCLOSED_ELLIPSE_FACTOR = 0.5 * Math.sqrt(2);
 
+	/**
+	 * offsets in the result array of the allocation free distance version
+	 */
+	public static final int DISTANCE_X = 0;
+	public static final int DISTANCE_Y = 1;
+	public static final int DISTANCE_LENGTH = 2;
+	public static final int DISTANCE_R1 = 3;
+	public static final int DISTANCE_R2 = 4;
+	public static final int DISTANCE_SIZE = 5;
+
 	/**
 	 * @return
 	 */
@@ -24,22 +35,55 @@ public class Physics {
 	}
 
 	public static Distance distance(Rectangle2D a, Rectangle2D b) {
-		final Vec2d distVec = new Vec2d();
-		distVec.setX(a.getCenterX() - b.getCenterX());
-		distVec.setY(a.getCenterY() - b.getCenterY());
+		return distance(a, b, null);
+	}
+
+	/**
+	 * @param random
+	 *            source of the random shift of rectangles at the same position, null for {@link Math#random()}
+	 */
+	public static Distance distance(Rectangle2D a, Rectangle2D b, Random random) {
+		double[] r = new double[DISTANCE_SIZE];
+		distance(a.getCenterX(), a.getCenterY(), a.getWidth(), a.getHeight(), b.getCenterX(), b.getCenterY(),
+				b.getWidth(), b.getHeight(), r, random);
+		return new Distance(new Vec2d(r[DISTANCE_X], r[DISTANCE_Y]), r[DISTANCE_LENGTH], r[DISTANCE_R1],
+				r[DISTANCE_R2]);
+	}
 
-		double d = distVec.length();
+	/**
+	 * allocation free version of {@link #distance(Rectangle2D, Rectangle2D)} given the center and size of both
+	 * rectangles
+	 *
+	 * @param r
+	 *            the result: the distance vector, its signed length and the two radii, see {@link #DISTANCE_X}
+	 */
+	public static void distance(double ax, double ay, double aw, double ah, double bx, double by, double bw,
+			double bh, double[] r) {
+		distance(ax, ay, aw, ah, bx, by, bw, bh, r, null);
+	}
+
+	/**
+	 * @param random
+	 *            source of the random shift of rectangles at the same position, null for {@link Math#random()}
+	 */
+	public static void distance(double ax, double ay, double aw, double ah, double bx, double by, double bw,
+			double bh, double[] r, Random random) {
+		double dx = ax - bx;
+		double dy = ay - by;
+
+		double d = Math.sqrt(dx * dx + dy * dy);
 		if (d <= 0) { // if the same position randomly shift
-			distVec.setX(Math.random() * 20 - 10);
-			distVec.setY(Math.random() * 20 - 10);
-			d = distVec.length();
+			dx = (random == null ? Math.random() : random.nextDouble()) * 20 - 10;
+			dy = (random == null ? Math.random() : random.nextDouble()) * 20 - 10;
+			d = Math.sqrt(dx * dx + dy * dy);
 		}
-		distVec.scale(1. / d); // aka normalize
+		// aka normalize
+		final double inv = 1. / d;
+		dx *= inv;
+		dy *= inv;
 
-		final double r1 = ellipseRadius(distVec, a.getWidth() * ENCLOSED_ELLIPSE_FACTOR, a.getHeight()
-				* ENCLOSED_ELLIPSE_FACTOR);
-		final double r2 = ellipseRadius(distVec, b.getWidth() * ENCLOSED_ELLIPSE_FACTOR, b.getHeight()
-				* ENCLOSED_ELLIPSE_FACTOR);
+		final double r1 = ellipseRadius(dx, dy, aw * ENCLOSED_ELLIPSE_FACTOR, ah * ENCLOSED_ELLIPSE_FACTOR);
+		final double r2 = ellipseRadius(dx, dy, bw * ENCLOSED_ELLIPSE_FACTOR, bh * ENCLOSED_ELLIPSE_FACTOR);
 		final double d_real = d - r1 - r2;
 		// // final double d_real = aabbDistance(a, b, distVec, d);
 		// // final double d_real = ellipseDistance(a, b, distVec, d);
@@ -47,8 +91,11 @@ public class Physics {
 		// // final double d_real = circleDistance(a, b, distVec, d);
 		// // final double d_real = circleDiameterDistance(a, b, distVec, d);
 
-		distVec.scale(d_real);
-		return new Distance(distVec, d_real, r1, r2);
+		r[DISTANCE_X] = dx * d_real;
+		r[DISTANCE_Y] = dy * d_real;
+		r[DISTANCE_LENGTH] = d_real;
+		r[DISTANCE_R1] = r1;
+		r[DISTANCE_R2] = r2;
 	}
 
 	private static double aabbDistance(Rectangle2D a, Rectangle2D b, final Vec2d ray_dir, final double d) {
@@ -123,11 +170,15 @@ public class Physics {
 	}
 
 	private static double ellipseRadius(Vec2d ray_dir, double a, double b) {
+		return ellipseRadius(ray_dir.x(), ray_dir.y(), a, b);
+	}
+
+	private static double ellipseRadius(double ray_dir_x, double ray_dir_y, double a, double b) {
 		if (a == 0 || b == 0)
 			return 0;
 		// https://en.wikipedia.org/wiki/Ellipse#Polar_form_relative_to_center
 		// r(\theta)=\frac{ab}{\sqrt{(b \cos \theta)^2 + (a\sin \theta)^2}}
-		double r = (a * b) / (Math.sqrt(pow2(a * ray_dir.x()) + pow2(b * ray_dir.y())));
+		double r = (a * b) / (Math.sqrt(pow2(a * ray_dir_x) + pow2(b * ray_dir_y)));
 
 		return r;
 	}
@@ -6,95 +6,223 @@
 package org.caleydo.view.bicluster.sorting;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
 
 /**
+ * orders the elements of a cluster, such that its bands, i.e. the overlaps with other clusters, are as continuous as
+ * possible.
+ *
+ * the elements are grouped by a partition refinement into atoms of elements belonging to exactly the same bands. The
+ * bands are ranked by size and the atoms are ordered by their memberships following a binary reflected Gray code:
+ * the largest band is a single block, nested bands are continuous and the intersection of two overlapping bands lies
+ * at the border between them. As every atom refines the one it was split from, the order is a traversal of the
+ * refinement tree and no comparison of memberships is needed.
+ *
+ * costs O(k log k + m) for k bands with m memberships in total. The result is deterministic, within an atom the
+ * elements are ascending. Just elements of at least one band are part of the result.
+ *
  * @author Michael Gillhofer
+ * @author Samuel Gratzl
  *
  */
-public class BandSorting implements Iterable<Integer> {
+public final class BandSorting implements Iterable<Integer> {
+	private static final int NONE = -1;
 
-	private List<Collection<Integer>> nonEmptyBands;
-	private Set<BandConflict> conflicts = new TreeSet<>();
-	private Set<Integer> finalSorting = new LinkedHashSet<>();
+	private final int[] order;
 
-	public BandSorting(List<Collection<Integer>> nonEmptyBands) {
-		this.nonEmptyBands = nonEmptyBands;
-		init();
+	/**
+	 * @param bands
+	 *            the element indices of the bands, not modified
+	 */
+	public BandSorting(List<BitSet> bands) {
+		this.order = new Refinement().sort(bands);
 	}
 
-	private void init() {
-		for (int i = 0; i < nonEmptyBands.size(); i++) {
-			for (int j = i + 1; j < nonEmptyBands.size(); j++) {
-				List<Integer> potentialConflict = new ArrayList<Integer>(nonEmptyBands.get(i));
-				potentialConflict.retainAll(nonEmptyBands.get(j));
-				conflicts.add(new BandConflict(nonEmptyBands.get(i), nonEmptyBands.get(j), potentialConflict));
-
-			}
-		}
-		for (BandConflict bc : conflicts) {
-			List<Integer> firstWithoutConflicts = new ArrayList<>(bc.getFirst());
-			if (!bc.getConflict().isEmpty())
-				firstWithoutConflicts.removeAll(bc.getConflict());
-			finalSorting.addAll(firstWithoutConflicts);
-			finalSorting.addAll(bc.getConflict());
-			finalSorting.addAll(bc.getSecond());
+	/**
+	 * @param bands
+	 *            the element indices of the bands
+	 * @return the sorting of the given bands
+	 */
+	public static BandSorting of(List<? extends Collection<Integer>> bands) {
+		List<BitSet> bits = new ArrayList<>(bands.size());
+		for (Collection<Integer> band : bands) {
+			BitSet b = new BitSet();
+			for (Integer i : band)
+				b.set(i.intValue());
+			bits.add(b);
 		}
+		return new BandSorting(bits);
+	}
+
+	/**
+	 * @return the number of sorted elements
+	 */
+	public int size() {
+		return order.length;
+	}
+
+	/**
+	 * @return the i-th element of the sorting
+	 */
+	public int get(int i) {
+		return order[i];
 	}
 
 	@Override
 	public Iterator<Integer> iterator() {
-		return finalSorting.iterator();
-	}
+		return new Iterator<Integer>() {
+			private int cursor = 0;
 
+			@Override
+			public boolean hasNext() {
+				return cursor < order.length;
+			}
 
+			@Override
+			public Integer next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return order[cursor++];
+			}
 
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
 
 	/**
-	 * @author Michael Gillhofer
-	 *
+	 * the state of a single sorting
 	 */
-	public class BandConflict implements Comparable<BandConflict> {
-		private final Collection<Integer> first;
-		private final Collection<Integer> second;
-		private final List<Integer> conflict;
-
-		public BandConflict(Collection<Integer> first, Collection<Integer> second, List<Integer> conflict) {
-			this.first = first;
-			this.second = second;
-			this.conflict = conflict;
-		}
+	private static final class Refinement {
 		/**
-		 * @return the first, see {@link #first}
+		 * refinement tree: class -> children in ascending rank of the splitting band
 		 */
-		public Collection<Integer> getFirst() {
-			return first;
-		}
-
+		private int[] firstChild, lastChild, nextSibling, prevSibling;
 		/**
-		 * @return the second, see {@link #second}
+		 * the rank of the band, that last split a class and the class it was split into
 		 */
-		public Collection<Integer> getSecond() {
-			return second;
+		private int[] splitBy, splitTo;
+		/**
+		 * elements of class c at [atomStart[c], atomStart[c+1]) of {@link #atoms}
+		 */
+		private int[] atomStart;
+		private int[] atoms;
+		private int size = 0;
+
+		private int[] sort(final List<BitSet> bands) {
+			// rank the non empty bands: larger first, input order for ties
+			List<Integer> ranked = new ArrayList<>(bands.size());
+			final int[] cardinalities = new int[bands.size()];
+			int memberships = 0;
+			int elements = 0;
+			for (int i = 0; i < bands.size(); ++i) {
+				cardinalities[i] = bands.get(i).cardinality();
+				if (cardinalities[i] == 0)
+					continue;
+				ranked.add(i);
+				memberships += cardinalities[i];
+				elements = Math.max(elements, bands.get(i).length());
+			}
+			Collections.sort(ranked, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					if (cardinalities[a] != cardinalities[b])
+						return cardinalities[a] > cardinalities[b] ? -1 : 1;
+					return Integer.compare(a, b);
+				}
+			});
+
+			// partition refinement, class 0 = the elements of no band
+			ensureCapacity(Math.min(memberships + 1, elements * 2 + 1));
+			final int[] classOf = new int[elements];
+			int classes = 1;
+			firstChild[0] = lastChild[0] = NONE;
+			splitBy[0] = NONE;
+			for (int rank = 0; rank < ranked.size(); ++rank) {
+				final BitSet band = bands.get(ranked.get(rank));
+				for (int e = band.nextSetBit(0); e >= 0; e = band.nextSetBit(e + 1)) {
+					final int c = classOf[e];
+					if (splitBy[c] != rank) { // first element of this class in this band
+						if (classes == splitBy.length)
+							ensureCapacity(Math.min(memberships + 1, classes * 2));
+						final int n = classes++;
+						firstChild[n] = lastChild[n] = nextSibling[n] = NONE;
+						prevSibling[n] = lastChild[c];
+						splitBy[n] = NONE;
+						if (lastChild[c] == NONE)
+							firstChild[c] = n;
+						else
+							nextSibling[lastChild[c]] = n;
+						lastChild[c] = n;
+						splitBy[c] = rank;
+						splitTo[c] = n;
+					}
+					classOf[e] = splitTo[c];
+				}
+			}
+
+			// group the elements by their class, ascending within a class
+			atomStart = new int[classes + 1];
+			for (int e = 0; e < elements; ++e)
+				atomStart[classOf[e] + 1]++;
+			for (int c = 0; c < classes; ++c)
+				atomStart[c + 1] += atomStart[c];
+			atoms = new int[elements];
+			final int[] fill = Arrays.copyOf(atomStart, classes);
+			for (int e = 0; e < elements; ++e)
+				atoms[fill[classOf[e]]++] = e;
+
+			int[] r = new int[elements - (atomStart[1] - atomStart[0])];
+			for (int child = firstChild[0]; child != NONE; child = nextSibling[child])
+				traverse(child, 1, r);
+			assert size == r.length;
+			return r;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (firstChild != null && capacity <= firstChild.length)
+				return;
+			firstChild = grow(firstChild, capacity);
+			lastChild = grow(lastChild, capacity);
+			nextSibling = grow(nextSibling, capacity);
+			prevSibling = grow(prevSibling, capacity);
+			splitBy = grow(splitBy, capacity);
+			splitTo = grow(splitTo, capacity);
+		}
+
+		private static int[] grow(int[] a, int capacity) {
+			return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
 		}
 
 		/**
-		 * @return the conflict, see {@link #conflict}
+		 * reflected traversal: on even depths the members of the next band first, on odd depths the others first
 		 */
-		public List<Integer> getConflict() {
-			return conflict;
+		private void traverse(int c, int depth, int[] r) {
+			if ((depth & 1) == 0) {
+				for (int child = firstChild[c]; child != NONE; child = nextSibling[child])
+					traverse(child, depth + 1, r);
+				emit(c, r);
+			} else {
+				emit(c, r);
+				for (int child = lastChild[c]; child != NONE; child = prevSibling[child])
+					traverse(child, depth + 1, r);
+			}
 		}
 
-		@Override
-		public int compareTo(BandConflict o) {
-			return new Integer(conflict.size()).compareTo(o.conflict.size());
+		private void emit(int c, int[] r) {
+			final int from = atomStart[c];
+			final int to = atomStart[c + 1];
+			System.arraycopy(atoms, from, r, size, to - from);
+			size += to - from;
 		}
-
 	}
-
 }
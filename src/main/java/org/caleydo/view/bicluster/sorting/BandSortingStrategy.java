@@ -6,7 +6,7 @@
 package org.caleydo.view.bicluster.sorting;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -49,9 +49,9 @@ public class BandSortingStrategy implements ISortingStrategy {
 
 	@Override
 	public List<IntFloat> apply(List<IntFloat> list) {
-		List<Collection<Integer>> nonEmptyDimBands = new ArrayList<>();
+		List<BitSet> nonEmptyDimBands = new ArrayList<>();
 		for (Edge edge : cluster.getOverlappingEdges(dim)) {
-			nonEmptyDimBands.add(edge.getOverlapIndices(dim));
+			nonEmptyDimBands.add(edge.getOverlapBits(dim));
 		}
 		if (nonEmptyDimBands.isEmpty()) // early abort no bands nothing todo
 			return list;
@@ -7,134 +7,257 @@ package org.caleydo.view.bicluster.sorting;
 
 import static org.caleydo.view.bicluster.internal.prefs.MyPreferences.UNBOUND_NUMBER;
 
-import java.util.Iterator;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 
 import org.caleydo.core.util.function.DoubleSizedIterables;
 import org.caleydo.core.util.function.IDoubleFunction;
 import org.caleydo.core.util.function.IDoubleSizedIterable;
 import org.caleydo.core.util.function.IDoubleSizedIterator;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Lists;
-
 /**
  * clustering for a specific clusterer in one dimension
  *
+ * the memberships are stored as two parallel primitive arrays sorted by membership (and index for ties), such that all
+ * filter operations are binary searches returning lightweight views
+ *
  * @author Samuel Gratzl
  *
  */
 public final class FuzzyClustering implements IDoubleSizedIterable {
-	private final static IntFloat ZERO = new IntFloat(0, 0);
-
 	/**
-	 * index,probability sorted by probability
+	 * index sorted by membership
+	 */
+	private final int[] indices;
+	/**
+	 * membership sorted ascending, parallel to {@link #indices}
 	 */
-	private final ImmutableSortedSet<IntFloat> memberships;
+	private final float[] memberships;
 
-	public FuzzyClustering(ImmutableSortedSet<IntFloat> memberships) {
+	/**
+	 * @param indices
+	 *            the indices sorted by their membership
+	 * @param memberships
+	 *            the sorted memberships
+	 */
+	public FuzzyClustering(int[] indices, float[] memberships) {
+		assert indices.length == memberships.length;
+		this.indices = indices;
 		this.memberships = memberships;
 	}
 
+	/**
+	 * creates a new {@link FuzzyClustering} by sorting the given raw memberships, where the array index is the record
+	 * / dimension index
+	 *
+	 * @param raw
+	 * @return
+	 */
+	public static FuzzyClustering of(float[] raw) {
+		final int n = raw.length;
+		// encode membership and index in a single sortable long to avoid boxing
+		long[] keys = new long[n];
+		for (int i = 0; i < n; ++i)
+			keys[i] = ((long) toSortable(raw[i]) << 32) | (i & 0xFFFFFFFFL);
+		Arrays.sort(keys);
+
+		int[] indices = new int[n];
+		float[] memberships = new float[n];
+		for (int i = 0; i < n; ++i) {
+			final int index = (int) keys[i];
+			indices[i] = index;
+			memberships[i] = raw[index];
+		}
+		return new FuzzyClustering(indices, memberships);
+	}
+
+	/**
+	 * converts a float to an int, such that the signed int order matches {@link Float#compare(float, float)}
+	 */
+	private static int toSortable(float f) {
+		int bits = Float.floatToIntBits(f);
+		return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+	}
+
+	/**
+	 * @return the first position with a membership >= the given value
+	 */
+	private int lowerBound(float value) {
+		int low = 0;
+		int high = memberships.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (Float.compare(memberships[mid], value) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @return the first position with a membership > the given value
+	 */
+	private int upperBound(float value) {
+		int low = 0;
+		int high = memberships.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (Float.compare(memberships[mid], value) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
 	public float getAbsMinValue() {
-		IntFloat a = memberships.ceiling(ZERO); // >= 0
-		IntFloat b = memberships.floor(ZERO); // <= 0
-		float a_f = a == null ? Float.POSITIVE_INFINITY : a.getMembership();
-		float b_f = b == null ? Float.POSITIVE_INFINITY : -b.getMembership();
+		final int a = lowerBound(0); // >= 0
+		final int b = upperBound(0) - 1; // <= 0
+		float a_f = a >= memberships.length ? Float.POSITIVE_INFINITY : memberships[a];
+		float b_f = b < 0 ? Float.POSITIVE_INFINITY : -memberships[b];
 		return Math.min(a_f, b_f);
 	}
 
 	public float getAbsMaxValue() {
-		IntFloat a = memberships.last(); // largest positive
-		IntFloat b = memberships.first(); // largest negative
-		float a_f = a == null ? Float.NEGATIVE_INFINITY : a.getMembership();
-		float b_f = b == null ? Float.NEGATIVE_INFINITY : -b.getMembership();
+		if (memberships.length == 0)
+			return Float.NEGATIVE_INFINITY;
+		float a_f = memberships[memberships.length - 1]; // largest positive
+		float b_f = -memberships[0]; // largest negative
 		return Math.max(a_f, b_f);
 	}
 
-	public ImmutableList<IntFloat> negatives(float threshold, int maxElements) {
-		ImmutableSortedSet<IntFloat> r = memberships.headSet(new IntFloat(Integer.MAX_VALUE, -Math.abs(threshold)),
-				true);
-		ImmutableList<IntFloat> l = r.asList();
-
-		if (l.size() <= maxElements || maxElements == UNBOUND_NUMBER)
-			return l;
-		// the larger the index the nearer to zero to less interesting
-		return l.subList(0, maxElements);
+	/**
+	 * @return the exclusive end of the negative range for the given threshold
+	 */
+	private int negativesEnd(float threshold) {
+		return upperBound(-Math.abs(threshold));
+	}
 
+	/**
+	 * @return the inclusive start of the positive range for the given threshold
+	 */
+	private int positivesStart(float threshold) {
+		return lowerBound(Math.abs(threshold));
 	}
 
-	public ImmutableList<IntFloat> positives(float threshold, int maxElements) {
-		ImmutableSortedSet<IntFloat> r = memberships.tailSet(new IntFloat(Integer.MIN_VALUE, Math.abs(threshold)),
-				true);
-		ImmutableList<IntFloat> l = r.asList();
+	public List<IntFloat> negatives(float threshold, int maxElements) {
+		int end = negativesEnd(threshold);
+		// the larger the index the nearer to zero to less interesting
+		if (maxElements != UNBOUND_NUMBER && end > maxElements)
+			end = maxElements;
+		return new IntFloatRange(0, end, 0, 0);
+	}
 
-		if (l.size() <= maxElements || maxElements == UNBOUND_NUMBER)
-			return l;
+	public List<IntFloat> positives(float threshold, int maxElements) {
+		final int n = memberships.length;
+		int start = positivesStart(threshold);
 		// the lower the index the nearer to zero to less interesting
-		return l.subList(l.size() - maxElements, l.size());
+		if (maxElements != UNBOUND_NUMBER && (n - start) > maxElements)
+			start = n - maxElements;
+		return new IntFloatRange(start, n, 0, 0);
 	}
 
 	public List<IntFloat> filter(float threshold, int maxElements, EThresholdMode mode) {
+		final int n = memberships.length;
 		if (threshold == 0 && maxElements == UNBOUND_NUMBER) {
 			switch (mode) {
 			case ABS:
-				return memberships.asList();
+				return new IntFloatRange(0, n, 0, 0);
 			case NEGATIVE_ONLY:
 				return negatives(0, UNBOUND_NUMBER);
 			case POSITVE_ONLY:
 				return positives(0, UNBOUND_NUMBER);
 			}
 		}
-		ImmutableList<IntFloat> negatives = mode.includeNegatives() ? negatives(threshold, maxElements) : ImmutableList
-				.<IntFloat> of();
-		ImmutableList<IntFloat> positives = mode.includePositives() ? positives(threshold, maxElements) : ImmutableList
-				.<IntFloat> of();
-		if (maxElements == UNBOUND_NUMBER || (negatives.size() + positives.size()) <= maxElements) //just add negatives and positives
-			return ConcatedList.concat(negatives, positives);
-
-		if (negatives.isEmpty()) {
-			return positives.subList(Math.max(0, positives.size() - maxElements), positives.size());
-		}
-		if (positives.isEmpty())
-			return negatives.subList(0, Math.min(negatives.size(), maxElements));
-
-		// take the abs top X elements
-		Iterator<IntFloat> negIt = negatives.iterator();
-		Iterator<IntFloat> posIt = Lists.reverse(positives).iterator();
-		IntFloat negEnd = null;
-		IntFloat negAct = negIt.next();
-		IntFloat posStart = null;
-		IntFloat posAct = posIt.next();
-
-		for(int i = 0; i < maxElements; ++i) {
-			if (negAct == null || (posAct != null && posAct.getMembership() > -negAct.getMembership())) {
-				posStart = posAct;
-				posAct = posIt.hasNext() ? posIt.next() : null;
-			} else {
-				negEnd = negAct;
-				negAct = negIt.hasNext() ? negIt.next() : null;
-			}
+		final int negEnd = mode.includeNegatives() ? negativesEnd(threshold) : 0;
+		final int posStart = mode.includePositives() ? positivesStart(threshold) : n;
+		final int negatives = negEnd;
+		final int positives = n - posStart;
+
+		if (maxElements == UNBOUND_NUMBER || (negatives + positives) <= maxElements) // just add negatives and positives
+			return new IntFloatRange(0, negEnd, posStart, n);
+
+		if (negatives == 0)
+			return new IntFloatRange(n - maxElements, n, 0, 0);
+		if (positives == 0)
+			return new IntFloatRange(0, maxElements, 0, 0);
+
+		// take the abs top X elements, by merging from both ends
+		int neg = 0;
+		int pos = n - 1;
+		for (int i = 0; i < maxElements; ++i) {
+			boolean negDone = neg >= negEnd;
+			boolean posDone = pos < posStart;
+			if (negDone || (!posDone && memberships[pos] > -memberships[neg]))
+				pos--;
+			else
+				neg++;
 		}
+		return new IntFloatRange(0, neg, pos + 1, n);
+	}
+
+	/**
+	 * computes the difference between two results of {@link #filter(float, int, EThresholdMode)} of this clustering.
+	 * As both are continuous ranges of the sorted memberships, just the ranges crossing the old / new threshold are
+	 * visited
+	 *
+	 * @param prev
+	 *            the previous filter result
+	 * @param next
+	 *            the new filter result
+	 * @param added
+	 *            target for the indices in next but not in prev
+	 * @param removed
+	 *            target for the indices in prev but not in next
+	 * @return false if the lists aren't filter results of this clustering and no difference was computed
+	 */
+	public boolean diff(List<IntFloat> prev, List<IntFloat> next, BitSet added, BitSet removed) {
+		if (!isRangeOfThis(prev) || !isRangeOfThis(next))
+			return false;
+		IntFloatRange p = (IntFloatRange) prev;
+		IntFloatRange n = (IntFloatRange) next;
+		p.subtract(n, removed);
+		n.subtract(p, added);
+		return true;
+	}
 
-		ImmutableSortedSet<IntFloat> headSet = negEnd == null ? ImmutableSortedSet.<IntFloat> of() : memberships
-				.headSet(negEnd, true);
-		ImmutableSortedSet<IntFloat> tailSet = posStart == null ? ImmutableSortedSet.<IntFloat> of() : memberships
-				.tailSet(posStart, true);
-		return ConcatedList.concat(headSet.asList(), tailSet.asList());
+	private boolean isRangeOfThis(List<IntFloat> l) {
+		return l instanceof IntFloatRange && ((IntFloatRange) l).getClustering() == this;
 	}
 
+	/**
+	 * @return the number of elements
+	 */
 	@Override
 	public int size() {
-		return this.size();
+		return memberships.length;
+	}
+
+	/**
+	 * @param i
+	 * @return the index at the i-th sorted position
+	 */
+	public int getIndex(int i) {
+		return indices[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the membership at the i-th sorted position
+	 */
+	public float getMembership(int i) {
+		return memberships[i];
 	}
 
 	@Override
 	public IDoubleSizedIterator iterator() {
 		return new IDoubleSizedIterator() {
-			private final Iterator<IntFloat> it = memberships.iterator();
-			private final int size = memberships.size();
+			private int cursor = 0;
 
 			@Override
 			public void remove() {
@@ -148,17 +271,19 @@ public final class FuzzyClustering implements IDoubleSizedIterable {
 
 			@Override
 			public boolean hasNext() {
-				return it.hasNext();
+				return cursor < memberships.length;
 			}
 
 			@Override
 			public double nextPrimitive() {
-				return it.next().getMembership();
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return memberships[cursor++];
 			}
 
 			@Override
 			public int size() {
-				return size;
+				return memberships.length;
 			}
 		};
 	}
@@ -167,4 +292,90 @@ public final class FuzzyClustering implements IDoubleSizedIterable {
 	public IDoubleSizedIterable map(IDoubleFunction f) {
 		return DoubleSizedIterables.map(this, f);
 	}
+
+	/**
+	 * lightweight view of up to two continuous ranges of the sorted arrays, the {@link IntFloat} elements are created
+	 * on demand
+	 *
+	 * @author Samuel Gratzl
+	 *
+	 */
+	private final class IntFloatRange extends AbstractList<IntFloat> implements RandomAccess {
+		private final int from1;
+		private final int size1;
+		private final int from2;
+		private final int size2;
+
+		public IntFloatRange(int from1, int to1, int from2, int to2) {
+			this.from1 = from1;
+			this.size1 = Math.max(0, to1 - from1);
+			this.from2 = from2;
+			this.size2 = Math.max(0, to2 - from2);
+		}
+
+		@Override
+		public int size() {
+			return size1 + size2;
+		}
+
+		FuzzyClustering getClustering() {
+			return FuzzyClustering.this;
+		}
+
+		/**
+		 * @return whether the sorted position is part of this range
+		 */
+		private boolean covers(int pos) {
+			return (pos >= from1 && pos < from1 + size1) || (pos >= from2 && pos < from2 + size2);
+		}
+
+		/**
+		 * @return the first sorted position > pos that is the start of one of the ranges or {@link Integer#MAX_VALUE}
+		 */
+		private int nextStart(int pos) {
+			int r = Integer.MAX_VALUE;
+			if (size1 > 0 && from1 > pos)
+				r = from1;
+			if (size2 > 0 && from2 > pos)
+				r = Math.min(r, from2);
+			return r;
+		}
+
+		/**
+		 * @return the exclusive end of the range covering pos
+		 */
+		private int endOf(int pos) {
+			return (pos >= from1 && pos < from1 + size1) ? from1 + size1 : from2 + size2;
+		}
+
+		/**
+		 * sets the indices of this range, that are not part of the other range in the target bitset
+		 */
+		void subtract(IntFloatRange other, BitSet target) {
+			subtract(from1, from1 + size1, other, target);
+			subtract(from2, from2 + size2, other, target);
+		}
+
+		private void subtract(int from, int to, IntFloatRange other, BitSet target) {
+			int pos = from;
+			while (pos < to) {
+				if (other.covers(pos)) {
+					pos = other.endOf(pos);
+					continue;
+				}
+				final int end = Math.min(to, other.nextStart(pos));
+				for (int i = pos; i < end; ++i)
+					target.set(indices[i]);
+				pos = end;
+			}
+		}
+
+		@Override
+		public IntFloat get(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException();
+			final int i = index < size1 ? from1 + index : from2 + index - size1;
+			return new IntFloat(indices[i], memberships[i]);
+		}
+	}
 }
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.util;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * read only, ascending ordered {@link java.util.Set} view of a {@link BitSet}
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class BitSetSet extends AbstractSet<Integer> {
+	private final BitSet bits;
+
+	public BitSetSet(BitSet bits) {
+		this.bits = bits;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer))
+			return false;
+		int i = (Integer) o;
+		return i >= 0 && bits.get(i);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return bits.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return bits.cardinality();
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int next = bits.nextSetBit(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Integer next() {
+				if (next < 0)
+					throw new NoSuchElementException();
+				int r = next;
+				next = bits.nextSetBit(next + 1);
+				return r;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
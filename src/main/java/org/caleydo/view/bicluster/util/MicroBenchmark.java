@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.util;
+
+import java.util.Locale;
+
+/**
+ * minimal micro benchmark: the operation is warmed up and then measured in several rounds of a fixed duration, the
+ * result of every invocation is consumed, such that the JIT can't eliminate it.
+ *
+ * numbers of different runs are only comparable on the same machine and JVM, thus measure before and after a change
+ * in the same environment
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public abstract class MicroBenchmark {
+	private static final long ROUND_NS = 200 * 1000000L;
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	/**
+	 * consumer of the results
+	 */
+	private static volatile int sink;
+
+	private final String name;
+	private final String param;
+
+	public MicroBenchmark(String name, String param) {
+		this.name = name;
+		this.param = param;
+	}
+
+	/**
+	 * a single invocation of the operation to measure
+	 *
+	 * @return the result, which will be consumed
+	 */
+	protected abstract Object run();
+
+	/**
+	 * warms up and measures the operation
+	 *
+	 * @return the result as table row, see {@link #header()}
+	 */
+	public final String measure() {
+		for (int i = 0; i < WARMUP_ROUNDS; ++i)
+			round();
+		double sum = 0, sum2 = 0, min = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < ROUNDS; ++i) {
+			final double ns = round();
+			sum += ns;
+			sum2 += ns * ns;
+			min = Math.min(min, ns);
+		}
+		final double mean = sum / ROUNDS;
+		final double stddev = Math.sqrt(Math.max(0, sum2 / ROUNDS - mean * mean));
+		return String.format(Locale.ENGLISH, "%-44s %-16s %14.1f %10.1f %14.1f", name, param, mean, stddev, min);
+	}
+
+	/**
+	 * @return the mean duration of an operation within a round in ns
+	 */
+	private double round() {
+		int h = 0;
+		long ops = 0;
+		final long start = System.nanoTime();
+		long now;
+		do {
+			h += System.identityHashCode(run());
+			ops++;
+			now = System.nanoTime();
+		} while (now - start < ROUND_NS);
+		sink += h;
+		return (now - start) / (double) ops;
+	}
+
+	public static String header() {
+		return String.format(Locale.ENGLISH, "%-44s %-16s %14s %10s %14s", "benchmark", "param", "ns/op", "+-",
+				"min ns/op");
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * immutable index of the positions of ids within a list, e.g. the ids of a virtual array, with constant lookup time.
+ *
+ * dense non negative ids are stored in an array indexed by id, sparse ones in a map
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class PositionIndex {
+	private static final int NONE = -1;
+
+	/**
+	 * id -> position or {@link #NONE}, null if sparse
+	 */
+	private final int[] positions;
+	private final Map<Integer, Integer> sparse;
+	private final int size;
+
+	private PositionIndex(int[] positions, Map<Integer, Integer> sparse, int size) {
+		this.positions = positions;
+		this.sparse = sparse;
+		this.size = size;
+	}
+
+	/**
+	 * @param ids
+	 *            the ids in their order, if an id occurs multiple times its first position is used
+	 */
+	public static PositionIndex of(List<Integer> ids) {
+		final int size = ids.size();
+		int min = 0, max = -1;
+		for (Integer id : ids) {
+			min = Math.min(min, id);
+			max = Math.max(max, id);
+		}
+		if (min >= 0 && max < size * 4 + 1024) {
+			int[] positions = new int[max + 1];
+			Arrays.fill(positions, NONE);
+			for (int i = size - 1; i >= 0; --i)
+				positions[ids.get(i)] = i;
+			return new PositionIndex(positions, null, size);
+		}
+		Map<Integer, Integer> sparse = new HashMap<>(size * 2);
+		for (int i = size - 1; i >= 0; --i)
+			sparse.put(ids.get(i), i);
+		return new PositionIndex(null, sparse, size);
+	}
+
+	/**
+	 * @return the position of the given id or -1 if it is not part of the list
+	 */
+	public int indexOf(int id) {
+		if (positions != null)
+			return id >= 0 && id < positions.length ? positions[id] : NONE;
+		Integer p = sparse.get(id);
+		return p == null ? NONE : p.intValue();
+	}
+
+	/**
+	 * @return the size of the indexed list
+	 */
+	public int size() {
+		return size;
+	}
+}
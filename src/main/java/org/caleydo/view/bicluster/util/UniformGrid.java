@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Caleydo - Visualization for Molecular Biology - http://caleydo.org
+ * Copyright (c) The Caleydo Team. All rights reserved.
+ * Licensed under the new BSD license, available at http://caleydo.org/license
+ *******************************************************************************/
+package org.caleydo.view.bicluster.util;
+
+import java.util.Arrays;
+
+/**
+ * spatial index of rectangles identified by a dense integer id, e.g. the index of a cluster.
+ *
+ * the plane is divided into square cells, which are hashed into a fixed number of buckets, such that the grid is
+ * unbounded. An entry is updated incrementally, i.e. just re-linked if it covers other cells than before. Neither
+ * updates nor queries allocate once the buffers are large enough.
+ *
+ * @author Samuel Gratzl
+ *
+ */
+public final class UniformGrid {
+	private static final int EMPTY = -1;
+	private static final int MAX_CELL = 1 << 20;
+
+	private double cellSize;
+	private double invCellSize;
+
+	/**
+	 * bucket -> first link
+	 */
+	private int[] buckets = new int[64];
+	/**
+	 * links of the bucket lists
+	 */
+	private int[] linkId = new int[64];
+	private int[] linkNext = new int[64];
+	private int freeLink = EMPTY;
+	private int links = 0;
+
+	/**
+	 * per id: bounds and covered cells, minCX > maxCX if not contained
+	 */
+	private double[] x = new double[0], y = new double[0], w = new double[0], h = new double[0];
+	private int[] minCX = new int[0], minCY = new int[0], maxCX = new int[0], maxCY = new int[0];
+
+	/**
+	 * query result and deduplication
+	 */
+	private int[] hits = new int[16];
+	private int hitCount = 0;
+	private int[] stamps = new int[0];
+	private int stamp = 0;
+
+	/**
+	 * @param cellSize
+	 *            the edge length of a cell, should be around the size of a typical rectangle
+	 */
+	public UniformGrid(double cellSize) {
+		clear(cellSize);
+	}
+
+	/**
+	 * removes all entries
+	 *
+	 * @param cellSize
+	 *            the new edge length of a cell
+	 */
+	public void clear(double cellSize) {
+		this.cellSize = Math.max(cellSize, 1);
+		this.invCellSize = 1 / this.cellSize;
+		Arrays.fill(buckets, EMPTY);
+		links = 0;
+		freeLink = EMPTY;
+		Arrays.fill(minCX, 0);
+		Arrays.fill(maxCX, -1);
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * clears the grid if the given cell size differs by more than a factor of two from the current one, such that the
+	 * grid adapts to the size of the rectangles
+	 */
+	public void ensureCellSize(double cellSize) {
+		if (cellSize > this.cellSize * 2 || cellSize < this.cellSize * 0.5)
+			clear(cellSize);
+	}
+
+	/**
+	 * adds or moves the rectangle with the given id
+	 */
+	public void update(int id, double x, double y, double w, double h) {
+		ensureCapacity(id + 1);
+		this.x[id] = x;
+		this.y[id] = y;
+		this.w[id] = w;
+		this.h[id] = h;
+		if (isInvalid(x, y, w, h)) {
+			remove(id);
+			return;
+		}
+		final int x0 = cell(x), y0 = cell(y), x1 = cell(x + w), y1 = cell(y + h);
+		if (x0 == minCX[id] && y0 == minCY[id] && x1 == maxCX[id] && y1 == maxCY[id])
+			return; // same cells
+		unlink(id);
+		minCX[id] = x0;
+		minCY[id] = y0;
+		maxCX[id] = x1;
+		maxCY[id] = y1;
+		for (int cx = x0; cx <= x1; ++cx)
+			for (int cy = y0; cy <= y1; ++cy)
+				link(bucket(cx, cy), id);
+	}
+
+	public void remove(int id) {
+		if (id >= minCX.length)
+			return;
+		unlink(id);
+		minCX[id] = 0;
+		maxCX[id] = -1;
+	}
+
+	/**
+	 * removes all ids &gt;= the given one
+	 */
+	public void truncate(int id) {
+		for (int i = id; i < minCX.length; ++i)
+			remove(i);
+	}
+
+	public boolean contains(int id) {
+		return id < minCX.length && isContained(id);
+	}
+
+	private boolean isContained(int id) {
+		return minCX[id] <= maxCX[id] && minCY[id] <= maxCY[id];
+	}
+
+	/**
+	 * finds all rectangles intersecting the given one, the result is available via {@link #getHit(int)} till the next
+	 * query
+	 *
+	 * @return the number of hits
+	 */
+	public int query(double x, double y, double w, double h) {
+		hitCount = 0;
+		if (++stamp == Integer.MAX_VALUE) { // overflow
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+		if (isInvalid(x, y, w, h))
+			return 0;
+		final int x0 = cell(x), y0 = cell(y), x1 = cell(x + w), y1 = cell(y + h);
+		for (int cx = x0; cx <= x1; ++cx) {
+			for (int cy = y0; cy <= y1; ++cy) {
+				for (int l = buckets[bucket(cx, cy)]; l != EMPTY; l = linkNext[l]) {
+					final int id = linkId[l];
+					if (stamps[id] == stamp)
+						continue;
+					stamps[id] = stamp;
+					if (intersects(id, x, y, w, h))
+						addHit(id);
+				}
+			}
+		}
+		return hitCount;
+	}
+
+	public int getHit(int i) {
+		return hits[i];
+	}
+
+	private boolean intersects(int id, double x, double y, double w, double h) {
+		return x < this.x[id] + this.w[id] && this.x[id] < x + w && y < this.y[id] + this.h[id]
+				&& this.y[id] < y + h;
+	}
+
+	private void addHit(int id) {
+		if (hitCount == hits.length)
+			hits = Arrays.copyOf(hits, hitCount * 2);
+		hits[hitCount++] = id;
+	}
+
+	private static boolean isInvalid(double x, double y, double w, double h) {
+		return Double.isNaN(x) || Double.isNaN(y) || Double.isNaN(w) || Double.isNaN(h) || w < 0 || h < 0;
+	}
+
+	private int cell(double v) {
+		// clamp to avoid overflows of far away rectangles
+		return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, Math.floor(v * invCellSize)));
+	}
+
+	private int bucket(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & (buckets.length - 1);
+	}
+
+	private void link(int bucket, int id) {
+		int l;
+		if (freeLink != EMPTY) {
+			l = freeLink;
+			freeLink = linkNext[l];
+		} else {
+			if (links == linkId.length) {
+				linkId = Arrays.copyOf(linkId, links * 2);
+				linkNext = Arrays.copyOf(linkNext, links * 2);
+			}
+			l = links++;
+		}
+		linkId[l] = id;
+		linkNext[l] = buckets[bucket];
+		buckets[bucket] = l;
+	}
+
+	private void unlink(int id) {
+		if (!isContained(id))
+			return;
+		for (int cx = minCX[id]; cx <= maxCX[id]; ++cx) {
+			for (int cy = minCY[id]; cy <= maxCY[id]; ++cy) {
+				final int b = bucket(cx, cy);
+				int prev = EMPTY;
+				for (int l = buckets[b]; l != EMPTY; prev = l, l = linkNext[l]) {
+					if (linkId[l] != id)
+						continue;
+					if (prev == EMPTY)
+						buckets[b] = linkNext[l];
+					else
+						linkNext[prev] = linkNext[l];
+					linkNext[l] = freeLink;
+					freeLink = l;
+					break;
+				}
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		final int old = minCX.length;
+		if (capacity <= old)
+			return;
+		final int l = Math.max(16, Math.max(capacity, old * 2));
+		x = Arrays.copyOf(x, l);
+		y = Arrays.copyOf(y, l);
+		w = Arrays.copyOf(w, l);
+		h = Arrays.copyOf(h, l);
+		minCX = Arrays.copyOf(minCX, l);
+		minCY = Arrays.copyOf(minCY, l);
+		maxCX = Arrays.copyOf(maxCX, l);
+		maxCY = Arrays.copyOf(maxCY, l);
+		Arrays.fill(maxCX, old, l, -1);
+		stamps = Arrays.copyOf(stamps, l);
+		if (l > buckets.length) { // keep the load factor low
+			int b = buckets.length;
+			while (b < l)
+				b *= 2;
+			rehash(b);
+		}
+	}
+
+	private void rehash(int size) {
+		buckets = new int[size];
+		Arrays.fill(buckets, EMPTY);
+		links = 0;
+		freeLink = EMPTY;
+		for (int id = 0; id < minCX.length; ++id) {
+			if (!isContained(id))
+				continue;
+			for (int cx = minCX[id]; cx <= maxCX[id]; ++cx)
+				for (int cy = minCY[id]; cy <= maxCY[id]; ++cy)
+					link(bucket(cx, cy), id);
+		}
+	}
+}